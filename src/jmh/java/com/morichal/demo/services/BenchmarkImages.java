@@ -0,0 +1,41 @@
+package com.morichal.demo.services;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.imageio.ImageIO;
+
+import com.morichal.demo.models.DisplayRegion;
+
+/**
+ * Fotos de básculas de src/test/resources/displays usadas por todos los benchmarks,
+ * para que los resultados sean comparables entre ejecuciones.
+ */
+final class BenchmarkImages {
+
+    private BenchmarkImages() {
+    }
+
+    static byte[] bytes(String name) throws IOException {
+        try (InputStream in = BenchmarkImages.class.getResourceAsStream("/displays/" + name)) {
+            if (in == null) {
+                throw new IOException("No existe la imagen de prueba: " + name);
+            }
+            return in.readAllBytes();
+        }
+    }
+
+    static BufferedImage read(String name) throws IOException {
+        return ImageIO.read(new ByteArrayInputStream(bytes(name)));
+    }
+
+    // La zona de dígitos, como la reciben las estrategias en producción
+    static BufferedImage display(BufferedImage original) {
+        DisplayRegionDetector detector = new DisplayRegionDetector();
+        DisplayRegion region = detector.detect(original);
+        return region == null ? original
+                : original.getSubimage(region.x(), region.y(), region.width(), region.height());
+    }
+}
@@ -0,0 +1,84 @@
+package com.morichal.demo.services;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Preprocesado de {@link ImagePreprocessor} sobre la zona de dígitos de cada foto, junto a
+ * las mismas operaciones con los kernels anteriores ({@code kernels=legacy}, de
+ * {@link LegacyImagePreprocessor}) como línea base. Con {@code -prof gc} se ve además
+ * cuánta memoria asigna cada variante.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImagePreprocessorBenchmark {
+
+    @Param({"impreso-2030.jpeg", "led-142976.jpeg", "led-0.295.jpeg", "dorado-87.jpg", "led-0.255-recorte.jpeg"})
+    public String image;
+
+    @Param({"fused", "legacy"})
+    public String kernels;
+
+    private BufferedImage display;
+    private boolean legacy;
+
+    @Setup
+    public void load() throws IOException {
+        display = BenchmarkImages.display(BenchmarkImages.read(image));
+        legacy = "legacy".equals(kernels);
+    }
+
+    @Benchmark
+    public BufferedImage safeScaleAndEnhance() {
+        return legacy ? LegacyImagePreprocessor.safeScaleAndEnhance(display) : ImagePreprocessor.safeScaleAndEnhance(display);
+    }
+
+    @Benchmark
+    public BufferedImage enhanceForDecimals() {
+        return legacy ? LegacyImagePreprocessor.enhanceForDecimals(display) : ImagePreprocessor.enhanceForDecimals(display);
+    }
+
+    @Benchmark
+    public BufferedImage enhanceForLongNumbers() {
+        return legacy ? LegacyImagePreprocessor.enhanceForLongNumbers(display) : ImagePreprocessor.enhanceForLongNumbers(display);
+    }
+
+    @Benchmark
+    public BufferedImage applyHighContrast() {
+        return legacy ? LegacyImagePreprocessor.applyHighContrast(display) : ImagePreprocessor.applyHighContrast(display);
+    }
+
+    @Benchmark
+    public BufferedImage invertColorsSafe() {
+        return legacy ? LegacyImagePreprocessor.invertColorsSafe(display) : ImagePreprocessor.invertColorsSafe(display);
+    }
+
+    // Las tres versiones que prueba la cascada sobre una misma imagen
+    @Benchmark
+    public void variants(Blackhole blackhole) {
+        if (legacy) {
+            blackhole.consume(LegacyImagePreprocessor.invertColorsSafe(display));
+            blackhole.consume(LegacyImagePreprocessor.applyHighContrast(display));
+        } else {
+            blackhole.consume(ImagePreprocessor.variants(display));
+        }
+    }
+}
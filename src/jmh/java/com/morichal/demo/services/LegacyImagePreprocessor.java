@@ -0,0 +1,99 @@
+package com.morichal.demo.services;
+
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.ConvolveOp;
+import java.awt.image.Kernel;
+import java.awt.image.RescaleOp;
+
+/**
+ * Preprocesado anterior a {@link ImagePreprocessor} (getRGB/setRGB por píxel,
+ * getScaledInstance y RescaleOp), conservado solo como referencia para los benchmarks.
+ */
+final class LegacyImagePreprocessor {
+
+    private LegacyImagePreprocessor() {
+    }
+
+    static BufferedImage safeScaleAndEnhance(BufferedImage original) {
+        int width = original.getWidth();
+        int height = original.getHeight();
+        double scaleFactor = 1.0;
+        if (width < 100 || height < 30) {
+            scaleFactor = Math.min(Math.max(100.0 / width, 30.0 / height), 5.0);
+        }
+        int newWidth = Math.max(50, (int) (width * scaleFactor));
+        int newHeight = Math.max(20, (int) (height * scaleFactor));
+        BufferedImage scaled = smoothScale(original, newWidth, newHeight, false);
+        RescaleOp rescaleOp = new RescaleOp(1.3f, 10f, null);
+        BufferedImage enhanced = new BufferedImage(scaled.getWidth(), scaled.getHeight(), scaled.getType());
+        rescaleOp.filter(scaled, enhanced);
+        return enhanced;
+    }
+
+    static BufferedImage enhanceForDecimals(BufferedImage original) {
+        int newWidth = Math.max(200, original.getWidth() * 3);
+        int newHeight = Math.max(60, original.getHeight() * 3);
+        BufferedImage scaled = smoothScale(original, newWidth, newHeight, false);
+        BufferedImage enhanced = new BufferedImage(newWidth, newHeight, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < newHeight; y++) {
+            for (int x = 0; x < newWidth; x++) {
+                enhanced.setRGB(x, y, contrast(scaled.getRGB(x, y), 1.5));
+            }
+        }
+        return enhanced;
+    }
+
+    static BufferedImage enhanceForLongNumbers(BufferedImage original) {
+        int newWidth = Math.max(400, original.getWidth() * 4);
+        int newHeight = Math.max(80, original.getHeight() * 2);
+        BufferedImage scaled = smoothScale(original, newWidth, newHeight, true);
+        BufferedImage gray = new BufferedImage(newWidth, newHeight, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D gGray = gray.createGraphics();
+        gGray.drawImage(scaled, 0, 0, null);
+        gGray.dispose();
+        float[] sharpenKernel = {0f, -1f, 0f, -1f, 5f, -1f, 0f, -1f, 0f};
+        return new ConvolveOp(new Kernel(3, 3, sharpenKernel)).filter(gray, null);
+    }
+
+    static BufferedImage invertColorsSafe(BufferedImage image) {
+        BufferedImage inverted = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                inverted.setRGB(x, y, ~image.getRGB(x, y) & 0xFFFFFF);
+            }
+        }
+        return inverted;
+    }
+
+    static BufferedImage applyHighContrast(BufferedImage image) {
+        BufferedImage result = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                result.setRGB(x, y, contrast(image.getRGB(x, y), 2.5));
+            }
+        }
+        return result;
+    }
+
+    private static BufferedImage smoothScale(BufferedImage original, int newWidth, int newHeight, boolean antialias) {
+        BufferedImage scaled = new BufferedImage(newWidth, newHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2 = scaled.createGraphics();
+        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        if (antialias) {
+            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        }
+        g2.drawImage(original.getScaledInstance(newWidth, newHeight, Image.SCALE_SMOOTH), 0, 0, null);
+        g2.dispose();
+        return scaled;
+    }
+
+    private static int contrast(int rgb, double factor) {
+        int r = Math.min(255, Math.max(0, (int) ((((rgb >> 16) & 0xFF) - 128) * factor + 128)));
+        int g = Math.min(255, Math.max(0, (int) ((((rgb >> 8) & 0xFF) - 128) * factor + 128)));
+        int b = Math.min(255, Math.max(0, (int) (((rgb & 0xFF) - 128) * factor + 128)));
+        return (r << 16) | (g << 8) | b;
+    }
+}
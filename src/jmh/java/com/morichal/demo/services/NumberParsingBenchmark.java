@@ -0,0 +1,40 @@
+package com.morichal.demo.services;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Conversión a número del texto de Tesseract, con salidas reales de las estrategias
+ * (saltos de línea, comas, ruido alrededor de los dígitos).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NumberParsingBenchmark {
+
+    @Param({"142976\n", "0.295", " 0,336 kg\n", "1.429.76", "PRECIO 2030 |", "--"})
+    public String text;
+
+    @Benchmark
+    public Double extractNumberWithDecimals() {
+        return OcrNumberParser.extractNumberWithDecimals(text);
+    }
+
+    @Benchmark
+    public Double extractLongNumber() {
+        return OcrNumberParser.extractLongNumber(text);
+    }
+}
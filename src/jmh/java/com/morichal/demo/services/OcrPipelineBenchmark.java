@@ -0,0 +1,76 @@
+package com.morichal.demo.services;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.morichal.demo.models.OcrResult;
+
+/**
+ * Reconocimiento completo de cada foto (decodificación, recorte, cascada y Tesseract),
+ * igual que extractNumberFromImage pero sin la caché de resultados, que convertiría
+ * todas las iteraciones menos la primera en aciertos.
+ *
+ * Necesita Tesseract instalado; los datos se buscan en {@code -Dtesseract.datapath}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class OcrPipelineBenchmark {
+
+    @Param({"impreso-2030.jpeg", "led-142976.jpeg", "led-0.295.jpeg", "dorado-87.jpg", "led-0.255-recorte.jpeg"})
+    public String image;
+
+    @Param({"SEQUENTIAL", "PARALLEL"})
+    public String mode;
+
+    private byte[] content;
+    private OcrEnginePool pool;
+    private ExecutorService executor;
+    private OcrPipeline pipeline;
+
+    @Setup
+    public void setUp() throws IOException {
+        content = BenchmarkImages.bytes(image);
+
+        String datapath = System.getProperty("tesseract.datapath", "/usr/share/tesseract-ocr/5/tessdata");
+        pool = new OcrEnginePool(datapath, "eng", 4, 30000);
+        executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+
+        // Orden fijo: con el orden adaptativo cada iteración podría medir una cascada distinta
+        OcrCascade cascade = new OcrCascade(pool, executor, new OcrStrategyStats(),
+                OcrCascade.Mode.valueOf(mode), 1, 2);
+        cascade.setConfidence(80, 10);
+        pool.warmUp(cascade.engineConfigs());
+
+        pipeline = new OcrPipeline(new ImageDecoder(2000), new DisplayRegionDetector(), cascade, OcrMetrics.noop());
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+        pool.close();
+    }
+
+    @Benchmark
+    public OcrResult recognize() throws IOException {
+        return pipeline.recognize(content);
+    }
+}
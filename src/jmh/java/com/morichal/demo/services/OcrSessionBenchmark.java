@@ -0,0 +1,76 @@
+package com.morichal.demo.services;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Varias pasadas PSM sobre la misma imagen: una llamada al pool por pasada (motor,
+ * conversión a gris y SetImage cada vez) frente a una sola {@link OcrSession}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class OcrSessionBenchmark {
+
+    private static final OcrEngineConfig CONFIG = OcrEngineConfig.numeric(8, OcrEngineConfig.DIGITOS_Y_DECIMALES);
+    private static final int[] PSMS = {8, 7, 6, 13, 10};
+
+    @Param({"led-142976.jpeg", "led-0.295.jpeg"})
+    public String image;
+
+    private BufferedImage display;
+    private OcrEnginePool pool;
+
+    @Setup
+    public void setUp() throws IOException {
+        display = ImagePreprocessor.variants(BenchmarkImages.display(BenchmarkImages.read(image))).normal();
+        String datapath = System.getProperty("tesseract.datapath", "/usr/share/tesseract-ocr/5/tessdata");
+        pool = new OcrEnginePool(datapath, "eng", PSMS.length, 30000);
+        List<OcrEngineConfig> configs = new ArrayList<>();
+        for (int psm : PSMS) {
+            configs.add(CONFIG.withPsm(psm));
+        }
+        pool.warmUp(configs);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Benchmark
+    public void separatePasses(Blackhole blackhole) throws InterruptedException {
+        for (int psm : PSMS) {
+            blackhole.consume(pool.recognize(CONFIG.withPsm(psm), display));
+        }
+    }
+
+    @Benchmark
+    public void session(Blackhole blackhole) throws InterruptedException {
+        try (OcrSession session = pool.openSession(CONFIG, display)) {
+            for (int psm : PSMS) {
+                blackhole.consume(session.recognize(psm));
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.morichal.demo.config;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+
+import com.morichal.demo.repositories.imageResponseRepository;
+import com.morichal.demo.services.FileStorageService;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Paso de las imágenes con nombre antiguo (UUID, todas en un mismo directorio) al almacén
+ * por contenido. Por cada nombre antiguo que usan los registros:
+ * <ol>
+ * <li>se copia (enlace duro si se puede) a su ruta por hash, con tantas referencias como
+ * registros lo usan; si ese contenido ya estaba, se comparte;</li>
+ * <li>se renombra en los registros;</li>
+ * <li>se borra el fichero antiguo y sus versiones reducidas.</li>
+ * </ol>
+ * Se ejecuta al arrancar, antes de atender peticiones, y es idempotente. Si se corta entre
+ * el paso 1 y el 2, la siguiente ejecución cuenta de más las referencias de ese fichero
+ * (nunca se borraría de más). Los ficheros que no usa ningún registro no se tocan.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class ImageStoreMigration {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageStoreMigration.class);
+
+    @Autowired
+    private imageResponseRepository imageResponseRepository;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Value("${app.upload.migration.enabled:true}")
+    private boolean enabled;
+
+    @PostConstruct
+    void migrate() {
+        if (!enabled) {
+            return;
+        }
+        List<String> antiguos;
+        try {
+            antiguos = imageResponseRepository.findDistinctImageNames().stream()
+                    .filter(nombre -> !nombre.isEmpty() && !FileStorageService.esNombreDeContenido(nombre))
+                    .toList();
+        } catch (RuntimeException e) {
+            logger.error("No se pudieron leer las imágenes a migrar: {}", e.getMessage(), e);
+            return;
+        }
+        if (antiguos.isEmpty()) {
+            return;
+        }
+
+        logger.info("Migrando {} imágenes al almacén por contenido", antiguos.size());
+        int migradas = 0;
+        int sinFichero = 0;
+        for (String antiguo : antiguos) {
+            try {
+                long referencias = imageResponseRepository.countByNombreImagen(antiguo);
+                String nuevo = fileStorageService.importarAntiguo(antiguo, (int) referencias);
+                if (nuevo == null) {
+                    sinFichero++;
+                    continue;
+                }
+                if (nuevo.equals(antiguo)) {
+                    // Ya estaba guardada con el nombre de su contenido: borrarla sería perderla
+                    continue;
+                }
+                imageResponseRepository.renameImage(antiguo, nuevo);
+                fileStorageService.borrarAntiguo(antiguo);
+                migradas++;
+            } catch (IOException | RuntimeException e) {
+                logger.warn("No se pudo migrar la imagen {}: {}", antiguo, e.getMessage());
+            }
+        }
+        logger.info("Imágenes migradas: {} ({} sin fichero en disco)", migradas, sinFichero);
+    }
+}
@@ -0,0 +1,194 @@
+package com.morichal.demo.config;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.morichal.demo.services.DisplayRegionDetector;
+import com.morichal.demo.services.ImageDecoder;
+import com.morichal.demo.services.OcrCascade;
+import com.morichal.demo.services.OcrConcurrencyLimiter;
+import com.morichal.demo.services.OcrEnginePool;
+import com.morichal.demo.services.OcrMetrics;
+import com.morichal.demo.services.OcrPipeline;
+import com.morichal.demo.services.OcrStrategyStats;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+@Configuration
+public class OcrConfig {
+
+    @Value("${app.threads.mode:platform}")
+    private String threadsMode = "platform";
+
+    @Bean
+    public OcrMetrics ocrMetrics(MeterRegistry meterRegistry) {
+        return new OcrMetrics(meterRegistry);
+    }
+
+    @Bean(destroyMethod = "close")
+    public OcrEnginePool ocrEnginePool(
+            OcrMetrics ocrMetrics,
+            OcrConcurrencyLimiter ocrConcurrencyLimiter,
+            @Value("${tesseract.datapath}") String tessDataPath,
+            @Value("${tesseract.language:eng}") String language,
+            @Value("${ocr.pool.size:4}") int poolSize,
+            @Value("${ocr.pool.acquire-timeout-ms:30000}") long acquireTimeoutMillis) {
+        OcrEnginePool pool = new OcrEnginePool(tessDataPath, language, poolSize, acquireTimeoutMillis);
+        pool.setMetrics(ocrMetrics);
+        pool.setConcurrencyLimiter(ocrConcurrencyLimiter);
+        ocrMetrics.bindPool(pool);
+        return pool;
+    }
+
+    // Llamadas a Tesseract simultáneas, en todas las peticiones y estrategias (0 = núcleos - 1:
+    // con hilos virtuales, el código nativo bloquea su hilo portador y se deja uno libre para
+    // el resto de peticiones)
+    @Bean
+    public OcrConcurrencyLimiter ocrConcurrencyLimiter(
+            OcrMetrics ocrMetrics,
+            @Value("${ocr.native.max-concurrent:0}") int maxConcurrent,
+            @Value("${ocr.native.acquire-timeout-ms:60000}") long acquireTimeoutMillis) {
+        int permits = maxConcurrent > 0 ? maxConcurrent : Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        OcrConcurrencyLimiter limiter = new OcrConcurrencyLimiter(permits, acquireTimeoutMillis);
+        ocrMetrics.bindLimiter(limiter);
+        return limiter;
+    }
+
+    // Hilos compartidos por todas las peticiones en modo paralelo; si la cola se llena
+    // la estrategia se ejecuta en el hilo de la petición
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService ocrCascadeExecutor(
+            @Value("${ocr.parallel.threads:0}") int threads,
+            @Value("${ocr.parallel.queue-capacity:64}") int queueCapacity) {
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        // Siempre hilos del sistema: son llamadas nativas que, en un hilo virtual, bloquearían su portador
+        return boundedExecutor(size, queueCapacity, platformThreads("ocr-cascade", Thread.NORM_PRIORITY),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    // Hilos para lotes de imágenes: separados de los de la cascada para que un lote no
+    // ocupe los hilos que sus propias estrategias necesitan en modo paralelo
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService ocrBatchExecutor(
+            @Value("${ocr.batch.threads:2}") int threads,
+            @Value("${ocr.batch.queue-capacity:64}") int queueCapacity) {
+        return boundedExecutor(threads, queueCapacity, serviceThreads("ocr-batch"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    // Trabajos asíncronos: hilos fijos y cola acotada; con la cola llena se rechaza
+    // (AbortPolicy) y la API responde 429 en lugar de acumular hilos y memoria
+    @Bean(destroyMethod = "shutdownNow")
+    public ThreadPoolExecutor ocrJobExecutor(
+            @Value("${ocr.jobs.workers:2}") int workers,
+            @Value("${ocr.jobs.queue-capacity:100}") int queueCapacity) {
+        return boundedExecutor(workers, queueCapacity, serviceThreads("ocr-job"),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    // Miniaturas y versiones medianas en segundo plano; con la cola llena se descartan
+    // (se generan al pedirlas)
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService imageDerivativeExecutor(
+            @Value("${app.derivatives.threads:1}") int threads,
+            @Value("${app.derivatives.queue-capacity:256}") int queueCapacity) {
+        return boundedExecutor(threads, queueCapacity, platformThreads("image-derivative", Thread.MIN_PRIORITY),
+                new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    // Borrado de imágenes fuera de la petición; si la cola se llena, lo que no entra lo
+    // recoge la reconciliación periódica
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolExecutor imageDeletionExecutor(
+            @Value("${app.deletion.queue-capacity:1000}") int queueCapacity) {
+        return boundedExecutor(1, queueCapacity, serviceThreads("image-deletion"),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    // Reconciliación entre registros e imágenes: una pasada cada vez, fuera del hilo de @Scheduled
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService imageReconcileExecutor() {
+        return boundedExecutor(1, 1, platformThreads("image-reconcile", Thread.MIN_PRIORITY),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @Bean
+    public OcrCascade ocrCascade(
+            OcrEnginePool ocrEnginePool,
+            @Qualifier("ocrCascadeExecutor") ExecutorService ocrCascadeExecutor,
+            OcrStrategyStats ocrStrategyStats,
+            OcrMetrics ocrMetrics,
+            @Value("${ocr.cascade.mode:sequential}") String mode,
+            @Value("${ocr.parallel.quorum:1}") int quorum,
+            @Value("${ocr.parallel.max-per-request:2}") int maxPerRequest,
+            @Value("${ocr.cascade.adaptive.enabled:true}") boolean adaptive,
+            @Value("${ocr.cascade.adaptive.explore-every:50}") int exploreEvery,
+            @Value("${ocr.confidence.accept:80}") float acceptConfidence,
+            @Value("${ocr.confidence.min:10}") float minConfidence) {
+        OcrCascade cascade = new OcrCascade(ocrEnginePool, ocrCascadeExecutor, ocrStrategyStats,
+                OcrCascade.Mode.valueOf(mode.trim().toUpperCase()), quorum, maxPerRequest);
+        cascade.setAdaptiveOrder(adaptive, exploreEvery);
+        cascade.setConfidence(acceptConfidence, minConfidence);
+        cascade.setMetrics(ocrMetrics);
+        return cascade;
+    }
+
+    @Bean
+    public DisplayRegionDetector displayRegionDetector() {
+        return new DisplayRegionDetector();
+    }
+
+    @Bean
+    public ImageDecoder imageDecoder(@Value("${ocr.decode.max-dimension:2000}") int maxDimension) {
+        return new ImageDecoder(maxDimension);
+    }
+
+    @Bean
+    public OcrPipeline ocrPipeline(
+            ImageDecoder imageDecoder,
+            DisplayRegionDetector displayRegionDetector,
+            OcrCascade ocrCascade,
+            OcrMetrics ocrMetrics,
+            @Value("${ocr.roi.enabled:true}") boolean roiEnabled,
+            @Value("${ocr.roi.fallback-full-frame:true}") boolean roiFallbackFullFrame) {
+        OcrPipeline pipeline = new OcrPipeline(imageDecoder, displayRegionDetector, ocrCascade, ocrMetrics);
+        pipeline.setRegionOfInterest(roiEnabled, roiFallbackFullFrame);
+        return pipeline;
+    }
+
+    // Hilos fijos y cola acotada: todos los ejecutores de arriba salen de aquí
+    private static ThreadPoolExecutor boundedExecutor(int threads, int queueCapacity, ThreadFactory threadFactory,
+            RejectedExecutionHandler rejection) {
+        return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory, rejection);
+    }
+
+    // Trabajo de servicio (lotes, trabajos, borrados): con app.threads.mode=virtual, en hilos
+    // virtuales como las peticiones; el trabajo nativo que hagan lo acota OcrConcurrencyLimiter
+    private ThreadFactory serviceThreads(String name) {
+        if ("virtual".equalsIgnoreCase(threadsMode.trim())) {
+            return Thread.ofVirtual().name(name + "-", 1).factory();
+        }
+        return platformThreads(name, Thread.NORM_PRIORITY);
+    }
+
+    private static ThreadFactory platformThreads(String name, int priority) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(priority);
+            return thread;
+        };
+    }
+}
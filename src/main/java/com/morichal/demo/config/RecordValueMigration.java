@@ -0,0 +1,126 @@
+package com.morichal.demo.config;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Blob;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Paso del valor de los registros de la antigua columna {@code text} (un @Lob) a la
+ * columna numérica {@code valor}. Hibernate (ddl-auto=update) crea {@code valor} pero
+ * no cambia ni borra columnas, así que al arrancar:
+ * <ol>
+ * <li>la columna antigua pasa a admitir NULL (las altas nuevas ya no la escriben);</li>
+ * <li>los registros con {@code valor} vacío se copian por lotes desde {@code text}.</li>
+ * </ol>
+ * Es idempotente: sin columna antigua o sin filas pendientes no hace nada. La columna
+ * {@code text} se conserva; puede borrarse a mano cuando ya no haga falta.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class RecordValueMigration {
+
+    private static final Logger logger = LoggerFactory.getLogger(RecordValueMigration.class);
+
+    private static final int BATCH_SIZE = 500;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${records.migration.value-column.enabled:true}")
+    private boolean enabled;
+
+    @PostConstruct
+    void migrate() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            List<Map<String, Object>> legacy = jdbcTemplate.queryForList(
+                    "select COLUMN_TYPE, IS_NULLABLE from information_schema.COLUMNS "
+                            + "where TABLE_SCHEMA = database() and TABLE_NAME = 'image_response' and COLUMN_NAME = 'text'");
+            if (legacy.isEmpty()) {
+                return;
+            }
+            if ("NO".equals(legacy.get(0).get("IS_NULLABLE"))) {
+                jdbcTemplate.execute("alter table image_response modify column text " + legacy.get(0).get("COLUMN_TYPE") + " null");
+                logger.info("Columna image_response.text marcada como opcional");
+            }
+            copyValues();
+        } catch (RuntimeException e) {
+            // Sin migrar la app sigue funcionando; los registros antiguos quedan sin valor
+            logger.error("No se pudo migrar image_response.text a valor: {}", e.getMessage(), e);
+        }
+    }
+
+    private void copyValues() {
+        long lastId = 0;
+        int migrated = 0;
+        int skipped = 0;
+        while (true) {
+            List<Object[]> rows = jdbcTemplate.query(
+                    "select id, text from image_response where valor is null and text is not null and id > ? order by id limit ?",
+                    (rs, n) -> new Object[] {rs.getLong(1), rs.getObject(2)}, lastId, BATCH_SIZE);
+            if (rows.isEmpty()) {
+                break;
+            }
+            List<Object[]> updates = new ArrayList<>(rows.size());
+            for (Object[] row : rows) {
+                lastId = (Long) row[0];
+                Double value = toDouble(row[1]);
+                if (value == null) {
+                    skipped++;
+                } else {
+                    updates.add(new Object[] {value, row[0]});
+                }
+            }
+            jdbcTemplate.batchUpdate("update image_response set valor = ? where id = ?", updates);
+            migrated += updates.size();
+        }
+        if (migrated > 0 || skipped > 0) {
+            logger.info("Migrados {} valores de image_response.text a valor ({} no convertibles)", migrated, skipped);
+        }
+    }
+
+    // Según la versión de Hibernate que creó la tabla, el @Lob se guardó como número,
+    // texto o un Double serializado en un BLOB
+    static Double toDouble(Object stored) {
+        try {
+            if (stored instanceof Number number) {
+                return number.doubleValue();
+            }
+            if (stored instanceof Blob blob) {
+                stored = blob.getBytes(1, (int) blob.length());
+            }
+            if (stored instanceof byte[] bytes) {
+                if (bytes.length > 1 && bytes[0] == (byte) 0xAC && bytes[1] == (byte) 0xED) {
+                    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                        // Solo se acepta el Double, nunca otras clases
+                        in.setObjectInputFilter(ObjectInputFilter.Config.createFilter("java.lang.Double;java.lang.Number;!*"));
+                        return in.readObject() instanceof Number number ? number.doubleValue() : null;
+                    }
+                }
+                stored = new String(bytes, StandardCharsets.UTF_8);
+            }
+            return Double.parseDouble(stored.toString().trim());
+        } catch (IOException | ClassNotFoundException | SQLException | NumberFormatException e) {
+            return null;
+        }
+    }
+}
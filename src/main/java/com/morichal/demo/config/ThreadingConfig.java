@@ -0,0 +1,55 @@
+package com.morichal.demo.config;
+
+import java.util.concurrent.Executors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Modelo de hilos de la capa web, elegido con {@code app.threads.mode}:
+ * {@code platform} (pool de Tomcat, por defecto) o {@code virtual} (un hilo virtual por
+ * petición). Con hilos virtuales las esperas de JDBC y de disco no ocupan hilos del
+ * sistema; el OCR sigue acotado por {@code OcrConcurrencyLimiter}.
+ */
+@Configuration
+public class ThreadingConfig {
+
+    // Peticiones HTTP (y todo lo que llaman: servicios, repositorio, ficheros)
+    @Bean
+    @ConditionalOnProperty(name = "app.threads.mode", havingValue = "virtual")
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadsProtocolHandler() {
+        return protocolHandler -> protocolHandler.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    /**
+     * Respuestas asíncronas de MVC (streaming de lotes y de exportaciones, SSE de trabajos).
+     * Se define aquí porque los ejecutores de {@link OcrConfig} hacen que Boot no cree el
+     * suyo, y MVC caería en un SimpleAsyncTaskExecutor sin límite de hilos. Acotado en los
+     * dos modos: pool fijo con cola en {@code platform}, hilos virtuales con un máximo de
+     * respuestas simultáneas en {@code virtual}.
+     */
+    @Bean(name = "applicationTaskExecutor")
+    public AsyncTaskExecutor applicationTaskExecutor(
+            @Value("${app.threads.mode:platform}") String mode,
+            @Value("${app.async.max-concurrent:16}") int maxConcurrent,
+            @Value("${app.async.queue-capacity:100}") int queueCapacity) {
+        if ("virtual".equalsIgnoreCase(mode.trim())) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(Thread.ofVirtual().name("mvc-async-", 1).factory());
+            executor.setConcurrencyLimit(maxConcurrent);
+            return executor;
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("mvc-async-");
+        executor.setCorePoolSize(maxConcurrent);
+        executor.setMaxPoolSize(maxConcurrent);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setDaemon(true);
+        return executor;
+    }
+}
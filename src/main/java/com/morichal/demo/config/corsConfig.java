@@ -18,6 +18,8 @@ public class corsConfig {
                         .allowedOrigins("http://localhost:5173")
                         .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
                         .allowedHeaders("*")
+                        // Cursor del listado paginado (GET /api/ocr)
+                        .exposedHeaders("X-Next-Cursor")
                         .allowCredentials(true);
             }
         };
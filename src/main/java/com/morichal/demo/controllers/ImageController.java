@@ -1,9 +1,15 @@
 package com.morichal.demo.controllers;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -15,39 +21,102 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
-import org.springframework.core.io.Resource;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 
+import com.morichal.demo.models.DisplayRegion;
+import com.morichal.demo.models.OcrResult;
 import com.morichal.demo.models.imageResponse;
 import com.morichal.demo.services.OCRService;
+import com.morichal.demo.services.OcrBatchService;
+import com.morichal.demo.services.RecordCache;
 import com.morichal.demo.services.FileStorageService;
+import com.morichal.demo.services.ImageDerivativeStore;
+import com.morichal.demo.services.RecordExportService;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 
 @RestController
 @RequestMapping("/api/ocr")
 public class ImageController {
 
+    private static final Logger logger = LoggerFactory.getLogger(ImageController.class);
+
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     @Autowired
     private OCRService ocrService;
 
+    @Autowired
+    private RecordExportService recordExportService;
+
+    @Autowired
+    private OcrBatchService ocrBatchService;
+
     @PostMapping("/extract-text")
     public ResponseEntity<?> uploadImage(@RequestParam("image") MultipartFile image) {
         try {
-            System.out.println("Recibida imagen para OCR: " + image.getOriginalFilename() + ", tamaño: " + image.getSize());
-            Double extractedNumber = ocrService.extractNumberFromImage(image);
-            System.out.println("Número extraído: " + extractedNumber);
-            imageResponse saved = ocrService.guardar(new imageResponse(extractedNumber));
-            System.out.println("Texto extraído guardado: " + saved.getText());
-            return ResponseEntity.ok(new ExtractNumberDTO(saved.getText()));
+            logger.debug("Recibida imagen para OCR: {}, tamaño: {}", image.getOriginalFilename(), image.getSize());
+            OcrResult result = ocrService.extractFromImage(image);
+            logger.debug("Número extraído: {}", result.value());
+            imageResponse saved = ocrService.guardar(new imageResponse(result.value()));
+            logger.debug("Texto extraído guardado: {}", saved.getText());
+            return ResponseEntity.ok(new ExtractNumberDTO(saved.getText(), result.confidence(), result.region()));
         } catch (IllegalArgumentException e) {
-            System.err.println("Error en OCR: " + e.getMessage());
+            logger.warn("Error en OCR: {}", e.getMessage());
             return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
-            System.err.println("Error inesperado al procesar la imagen: " + e.getMessage());
+            logger.error("Error inesperado al procesar la imagen: {}", e.getMessage(), e);
             return ResponseEntity.status(500).body("Error al procesar la imagen.");
         }
     }
 
+    // Misma operación con la imagen como cuerpo (Content-Type image/jpeg o image/png): se lee
+    // del socket una sola vez, sin multipart, y queda guardada junto al registro creado
+    @PostMapping(value = "/extract-text", consumes = {MediaType.IMAGE_JPEG_VALUE, MediaType.IMAGE_PNG_VALUE})
+    public ResponseEntity<?> uploadImageStream(InputStream body) {
+        try {
+            OCRService.StreamedOcr streamed = ocrService.extraerDeStream(body);
+            logger.debug("Número extraído: {} (registro {})", streamed.result().value(), streamed.registro().getId());
+            return ResponseEntity.ok(new ExtractNumberDTO(streamed.registro().getText(),
+                    streamed.result().confidence(), streamed.result().region()));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Error en OCR: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            logger.error("Error inesperado al procesar la imagen: {}", e.getMessage(), e);
+            return ResponseEntity.status(500).body("Error al procesar la imagen.");
+        }
+    }
+
+
+    // Varias imágenes en una petición; un resultado NDJSON por imagen según van terminando
+    // y una última línea con los ids guardados
+    @PostMapping(value = "/extract-text/batch", produces = "application/x-ndjson")
+    public ResponseEntity<?> uploadBatch(@RequestParam("images") List<MultipartFile> images) {
+        if (images == null || images.isEmpty()) {
+            return ResponseEntity.badRequest().body("No se recibió ningún archivo.");
+        }
+        if (images.size() > ocrBatchService.getMaxFiles()) {
+            return ResponseEntity.badRequest().body("Máximo " + ocrBatchService.getMaxFiles() + " imágenes por lote.");
+        }
+
+        List<OcrBatchService.BatchImage> batch;
+        try {
+            batch = ocrBatchService.receive(images);
+        } catch (IOException e) {
+            logger.warn("Error al leer el lote: {}", e.getMessage());
+            return ResponseEntity.status(500).body("Error al leer las imágenes.");
+        }
+        logger.debug("Recibido lote OCR de {} imágenes", batch.size());
+
+        StreamingResponseBody body = out -> ocrBatchService.process(batch, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
+    }
 
     @PostMapping
     public ResponseEntity<imageResponse> crearManual(
@@ -66,10 +135,66 @@ public class ImageController {
     }
 }
 
-    // Ver todos los registros
+    // Alta con la imagen como cuerpo de la petición; el resto de campos van en la query
+    @PostMapping(consumes = {MediaType.IMAGE_JPEG_VALUE, MediaType.IMAGE_PNG_VALUE})
+    public ResponseEntity<?> crearManualStream(
+            @RequestParam("categoria") String categoria,
+            @RequestParam("text") String text,
+            @RequestParam("uM") String uM,
+            @RequestParam("estado") String estado,
+            InputStream body) {
+        try {
+            return ResponseEntity.ok(ocrService.crearConImagenStream(categoria, text, uM, estado, body));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            logger.error("Error al crear el registro: {}", e.getMessage(), e);
+            return ResponseEntity.status(500).build();
+        }
+    }
+
+    // Listado paginado por id (más recientes primero). El cuerpo sigue siendo un array; el
+    // cursor de la página siguiente va en la cabecera X-Next-Cursor (ausente en la última).
+    // La tabla completa solo con ?all=true
     @GetMapping
-    public List<imageResponse> listarTodos() {
-        return ocrService.listarTodos();
+    public ResponseEntity<?> listar(
+            @RequestParam(value = "cursor", required = false) Long cursor,
+            @RequestParam(value = "size", required = false) Integer size,
+            @RequestParam(value = "categoria", required = false) String categoria,
+            @RequestParam(value = "estado", required = false) String estado,
+            @RequestParam(value = "all", defaultValue = "false") boolean all) {
+        if (all) {
+            return ResponseEntity.ok(ocrService.listarTodos());
+        }
+        OCRService.RegistrosPage page = ocrService.listarPagina(cursor, size, categoria, estado);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.nextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(page.nextCursor()));
+        }
+        return response.body(page.items());
+    }
+
+    // Exportación completa (CSV o NDJSON) escrita según se lee de la base de datos;
+    // filtros opcionales de categoría, estado y fechas de alta (incluidas)
+    @GetMapping("/export")
+    public ResponseEntity<?> exportar(
+            @RequestParam(value = "format", defaultValue = "csv") String format,
+            @RequestParam(value = "categoria", required = false) String categoria,
+            @RequestParam(value = "estado", required = false) String estado,
+            @RequestParam(value = "desde", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(value = "hasta", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta) {
+        RecordExportService.Format exportFormat;
+        try {
+            exportFormat = RecordExportService.Format.parse(format);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+        StreamingResponseBody body = out -> recordExportService.export(exportFormat, categoria, estado, desde, hasta, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.contentType() + ";charset=UTF-8"))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"registros." + exportFormat.extension() + "\"")
+                .body(body);
     }
 
     @GetMapping("/{id}")
@@ -80,24 +205,37 @@ public class ImageController {
 
     @Autowired 
     private FileStorageService fileStorageService;
+
+    @Autowired
+    private ImageFileSender imageFileSender;
     
-  @GetMapping("/{id}/imagen")
-    public ResponseEntity<Resource> obtenerImagen(@PathVariable Long id) {
-    try {
-        String nombreImagen = ocrService.obtenerRutaImagen(id);
-        Resource resource = fileStorageService.cargarImagen(nombreImagen);
-        
-        return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType("image/jpeg"))
-                .header(HttpHeaders.CONTENT_DISPOSITION, 
-                       "inline; filename=\"" + nombreImagen + "\"")
-                .body(resource);
-                
-         } catch (RuntimeException e) {
-             return ResponseEntity.notFound().build();
-         } catch (Exception e) {
-             return ResponseEntity.status(500).build();
-         }
+    // Imagen del registro con su Content-Type real, ETag/Last-Modified (304) y rangos de bytes.
+    // Con ?v=<nombreImagen> (el del listado) la respuesta se cachea como inmutable: si la imagen
+    // del registro cambia, cambia la URL. ?size=thumb|medium sirve una versión reducida en JPEG
+    @GetMapping("/{id}/imagen")
+    public void obtenerImagen(@PathVariable Long id, @RequestParam(value = "v", required = false) String version,
+            @RequestParam(value = "size", required = false) String size,
+            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ImageDerivativeStore.Size derivada;
+        try {
+            derivada = ImageDerivativeStore.Size.parse(size);
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        }
+        RecordCache.ImageRef imagen;
+        FileStorageService.ImageFile archivo;
+        try {
+            imagen = ocrService.obtenerImagen(id);
+            archivo = derivada == null
+                    ? fileStorageService.archivoImagen(imagen.nombreImagen())
+                    : fileStorageService.archivoDerivado(imagen.nombreImagen(), derivada);
+        } catch (RuntimeException e) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        String contentType = derivada == null ? imagen.contentType() : "image/jpeg";
+        imageFileSender.send(request, response, archivo, contentType, imagen.nombreImagen().equals(version));
     }
 
  @PutMapping("/{id}")
@@ -129,14 +267,28 @@ public ResponseEntity<imageResponse> actualizar(
     // DTO para la respuesta
     static class ExtractNumberDTO {
         private Double number;
+        // Confianza de Tesseract en la lectura (0-100)
+        private float confidence;
+        // Zona de la imagen que se leyó (null = imagen completa)
+        private DisplayRegion region;
 
-        public ExtractNumberDTO(Double number) {
+        public ExtractNumberDTO(Double number, float confidence, DisplayRegion region) {
             this.number = number;
+            this.confidence = confidence;
+            this.region = region;
         }
 
         public Double getNumber() {
             return number;
         }
+
+        public float getConfidence() {
+            return confidence;
+        }
+
+        public DisplayRegion getRegion() {
+            return region;
+        }
     }
 }
 
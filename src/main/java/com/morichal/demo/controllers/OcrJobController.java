@@ -0,0 +1,75 @@
+package com.morichal.demo.controllers;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.morichal.demo.services.OcrJobService;
+import com.morichal.demo.services.OcrQueueFullException;
+
+@RestController
+@RequestMapping("/api/ocr/jobs")
+public class OcrJobController {
+
+    private static final Logger logger = LoggerFactory.getLogger(OcrJobController.class);
+
+    @Autowired
+    private OcrJobService ocrJobService;
+
+    // Encola la imagen y responde enseguida con el id del trabajo (202)
+    @PostMapping
+    public ResponseEntity<?> submit(@RequestParam("image") MultipartFile image) {
+        if (image == null || image.isEmpty()) {
+            return ResponseEntity.badRequest().body("No se recibió ningún archivo.");
+        }
+        try {
+            OcrJobService.JobView job = ocrJobService.submit(image.getBytes(), image.getContentType(), image.getOriginalFilename());
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("jobId", job.id());
+            body.put("status", job.status());
+            body.put("statusUrl", "/api/ocr/jobs/" + job.id());
+            body.put("eventsUrl", "/api/ocr/jobs/" + job.id() + "/events");
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/ocr/jobs/" + job.id()))
+                    .body(body);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (OcrQueueFullException e) {
+            logger.warn(e.getMessage());
+            return ResponseEntity.status(429)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(e.getMessage());
+        } catch (IOException e) {
+            logger.warn("Error al leer la imagen: {}", e.getMessage());
+            return ResponseEntity.status(500).body("Error al leer la imagen.");
+        }
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<OcrJobService.JobView> status(@PathVariable String id) {
+        OcrJobService.JobView job = ocrJobService.find(id);
+        return job == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(job);
+    }
+
+    // Eventos SSE con cada cambio de estado hasta que el trabajo termina
+    @GetMapping(value = "/{id}/events", produces = "text/event-stream")
+    public ResponseEntity<SseEmitter> events(@PathVariable String id) {
+        SseEmitter emitter = ocrJobService.subscribe(id);
+        return emitter == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(emitter);
+    }
+}
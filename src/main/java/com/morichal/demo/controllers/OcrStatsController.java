@@ -0,0 +1,89 @@
+package com.morichal.demo.controllers;
+
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.morichal.demo.services.ImageStoreReconciler;
+import com.morichal.demo.services.OcrCascade;
+import com.morichal.demo.services.OcrConcurrencyLimiter;
+import com.morichal.demo.services.OcrEnginePool;
+import com.morichal.demo.services.OcrResultCache;
+import com.morichal.demo.services.OcrStrategyStats;
+import com.morichal.demo.services.RecordCache;
+
+@RestController
+@RequestMapping("/api/ocr/stats")
+public class OcrStatsController {
+
+    @Autowired
+    private OcrEnginePool ocrEnginePool;
+
+    @Autowired
+    private OcrCascade ocrCascade;
+
+    @Autowired
+    private OcrStrategyStats ocrStrategyStats;
+
+    @Autowired
+    private OcrResultCache ocrResultCache;
+
+    @Autowired
+    private OcrConcurrencyLimiter ocrConcurrencyLimiter;
+
+    @Autowired
+    private RecordCache recordCache;
+
+    @Autowired
+    private ImageStoreReconciler imageStoreReconciler;
+
+    // Tamaño del pool de motores Tesseract y tiempo de espera para obtener uno
+    @GetMapping("/pool")
+    public OcrEnginePool.PoolStats pool() {
+        return ocrEnginePool.getStats();
+    }
+
+    // Aciertos, victorias y latencia por estrategia, y el orden de cascada resultante
+    @GetMapping("/strategies")
+    public Map<String, Object> strategies() {
+        return ocrStrategyStats.describe(ocrCascade.defaultOrder());
+    }
+
+    // Aciertos, fallos, cálculos compartidos y desalojos de la caché de resultados
+    @GetMapping("/cache")
+    public OcrResultCache.CacheStats cache() {
+        return ocrResultCache.getStats();
+    }
+
+    // Reconocimientos en curso y en espera frente al límite configurado
+    @GetMapping("/limiter")
+    public OcrConcurrencyLimiter.LimiterStats limiter() {
+        return ocrConcurrencyLimiter.getStats();
+    }
+
+    // Aciertos y desalojos de la caché de registros y de nombres de imagen
+    @GetMapping("/records-cache")
+    public List<RecordCache.CacheStats> recordsCache() {
+        return recordCache.getStats();
+    }
+
+    // Última reconciliación entre registros e imágenes y estado de la cola de borrado
+    @GetMapping("/reconcile")
+    public ImageStoreReconciler.ReconcileStatus reconcile() {
+        return imageStoreReconciler.getStatus();
+    }
+
+    // Lanza una reconciliación ahora (202), o 409 si ya hay una en curso
+    @PostMapping("/reconcile")
+    public ResponseEntity<ImageStoreReconciler.ReconcileStatus> runReconcile() {
+        HttpStatus status = imageStoreReconciler.lanzar() ? HttpStatus.ACCEPTED : HttpStatus.CONFLICT;
+        return ResponseEntity.status(status).body(imageStoreReconciler.getStatus());
+    }
+}
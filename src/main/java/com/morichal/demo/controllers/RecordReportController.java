@@ -0,0 +1,46 @@
+package com.morichal.demo.controllers;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.morichal.demo.models.RecordAggregate;
+import com.morichal.demo.services.RecordReportService;
+
+@RestController
+@RequestMapping("/api/ocr/aggregates")
+public class RecordReportController {
+
+    @Autowired
+    private RecordReportService recordReportService;
+
+    // Total, cantidad, mínimo y máximo por categoría, estado y unidad (fechas opcionales, incluidas)
+    @GetMapping
+    public List<RecordAggregate> totales(
+            @RequestParam(value = "desde", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(value = "hasta", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta) {
+        return recordReportService.totalesPorGrupo(desde, hasta);
+    }
+
+    // Lo mismo por intervalo de tiempo (hour, day, week, month) y unidad; por defecto los últimos 30 días
+    @GetMapping("/series")
+    public ResponseEntity<?> serie(
+            @RequestParam(value = "bucket", defaultValue = "day") String bucket,
+            @RequestParam(value = "desde", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(value = "hasta", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(value = "categoria", required = false) String categoria,
+            @RequestParam(value = "estado", required = false) String estado) {
+        try {
+            return ResponseEntity.ok(recordReportService.serie(RecordReportService.Bucket.parse(bucket), desde, hasta, categoria, estado));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+}
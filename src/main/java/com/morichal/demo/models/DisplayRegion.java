@@ -0,0 +1,7 @@
+package com.morichal.demo.models;
+
+/**
+ * Rectángulo de la pantalla de la báscula dentro de la imagen original, en píxeles.
+ */
+public record DisplayRegion(int x, int y, int width, int height) {
+}
@@ -0,0 +1,11 @@
+package com.morichal.demo.models;
+
+import java.time.LocalDateTime;
+
+/**
+ * Fila del listado de registros. Se construye directamente en la consulta (sin entidades
+ * gestionadas por Hibernate) y serializa con los mismos nombres que {@link imageResponse}.
+ */
+public record ImageResponseSummary(Long id, Double text, String uM, String categoria, String estado, String nombreImagen,
+        LocalDateTime fechaRegistro) {
+}
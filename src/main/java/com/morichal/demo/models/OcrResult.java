@@ -0,0 +1,21 @@
+package com.morichal.demo.models;
+
+/**
+ * Número reconocido por la cascada OCR.
+ *
+ * @param value    número extraído
+ * @param strategy estrategia que lo produjo
+ * @param depth    estrategias ejecutadas hasta decidir
+ * @param confidence confianza de Tesseract en la lectura (0-100)
+ * @param region   zona de la imagen que se leyó, o null si se usó la imagen completa
+ */
+public record OcrResult(Double value, String strategy, int depth, float confidence, DisplayRegion region) {
+
+    public OcrResult(Double value, String strategy, int depth, float confidence) {
+        this(value, strategy, depth, confidence, null);
+    }
+
+    public OcrResult withRegion(DisplayRegion region) {
+        return new OcrResult(value, strategy, depth, confidence, region);
+    }
+}
@@ -0,0 +1,8 @@
+package com.morichal.demo.models;
+
+/**
+ * Totales de los registros de un grupo categoría/estado/unidad. Los valores de unidades
+ * distintas nunca se suman juntos.
+ */
+public record RecordAggregate(String categoria, String estado, String uM, Long count, Double total, Double min, Double max) {
+}
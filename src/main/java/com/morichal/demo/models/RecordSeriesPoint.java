@@ -0,0 +1,9 @@
+package com.morichal.demo.models;
+
+/**
+ * Totales de un intervalo de tiempo para una unidad.
+ *
+ * @param bucket inicio del intervalo, con el formato del tamaño pedido (2024-05-01, 2024-05, 2024-W18...)
+ */
+public record RecordSeriesPoint(String bucket, String uM, long count, double total, double min, double max) {
+}
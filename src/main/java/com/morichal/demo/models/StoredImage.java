@@ -0,0 +1,54 @@
+package com.morichal.demo.models;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * Fichero del almacén de imágenes. El nombre es el SHA-256 del contenido más la extensión,
+ * así que varias subidas idénticas comparten fichero; {@code referencias} cuenta los
+ * registros que lo usan y el fichero se borra cuando llega a cero.
+ */
+@Entity
+@Table(name = "stored_image")
+public class StoredImage {
+
+    @Id
+    @Column(length = 80)
+    private String nombre;
+
+    private int referencias;
+
+    private long bytes;
+
+    @Column(name = "fecha_creacion")
+    private LocalDateTime fechaCreacion;
+
+    public StoredImage() {}
+
+    public StoredImage(String nombre, int referencias, long bytes) {
+        this.nombre = nombre;
+        this.referencias = referencias;
+        this.bytes = bytes;
+        this.fechaCreacion = LocalDateTime.now();
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public int getReferencias() {
+        return referencias;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public LocalDateTime getFechaCreacion() {
+        return fechaCreacion;
+    }
+}
@@ -1,24 +1,39 @@
 package com.morichal.demo.models;
 
+import java.time.LocalDateTime;
+
 import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
-import jakarta.persistence.Lob;
+import jakarta.persistence.Index;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.Table;
 
 @Entity
+// Listado filtrado por categoría o estado y paginado por id; los dos últimos cubren
+// las agregaciones (totales por grupo y por intervalo de tiempo) sin leer la tabla
+@Table(indexes = {
+    @Index(name = "idx_image_response_categoria_id", columnList = "categoria, id"),
+    @Index(name = "idx_image_response_estado_id", columnList = "estado, id"),
+    @Index(name = "idx_image_response_grupo", columnList = "categoria, estado, u_m, valor"),
+    @Index(name = "idx_image_response_fecha", columnList = "fecha_registro, u_m, valor")
+})
 public class imageResponse {
     
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
     
-    @Lob
-    private double text;
+    // Columna numérica (DOUBLE) para poder sumar e indexar; antes era un @Lob en "text",
+    // ver RecordValueMigration
+    @Column(name = "valor")
+    private Double text;
     
     @JsonProperty("uM")
+    @Column(name = "u_m")
     private String uM;
     
     private String categoria;
@@ -29,6 +44,18 @@ public class imageResponse {
     @Column(name = "nombre_imagen")
     private String nombreImagen;
 
+    // Content-Type detectado al guardar la imagen (null en registros anteriores: se completa al servirla)
+    @Column(name = "tipo_imagen")
+    private String tipoImagen;
+
+    // Momento del alta, para las agregaciones por intervalo (null en registros anteriores)
+    @Column(name = "fecha_registro", updatable = false)
+    private LocalDateTime fechaRegistro;
+
+    // Marcado por la reconciliación cuando el fichero de la imagen no está en el almacén
+    @Column(name = "imagen_perdida")
+    private Boolean imagenPerdida;
+
     
     // Constructores existentes
     public imageResponse() {}
@@ -37,6 +64,13 @@ public class imageResponse {
         this.text = text;
     }
     
+    @PrePersist
+    void alCrear() {
+        if (fechaRegistro == null) {
+            fechaRegistro = LocalDateTime.now();
+        }
+    }
+    
     // Getters y Setters existentes
     public long getId() {
         return id;
@@ -85,4 +119,24 @@ public class imageResponse {
     public void setNombreImagen(String nombreImagen) {
         this.nombreImagen = nombreImagen;
     }
+
+    public LocalDateTime getFechaRegistro() {
+        return fechaRegistro;
+    }
+
+    public String getTipoImagen() {
+        return tipoImagen;
+    }
+
+    public void setTipoImagen(String tipoImagen) {
+        this.tipoImagen = tipoImagen;
+    }
+
+    public Boolean getImagenPerdida() {
+        return imagenPerdida;
+    }
+
+    public void setImagenPerdida(Boolean imagenPerdida) {
+        this.imagenPerdida = imagenPerdida;
+    }
 }
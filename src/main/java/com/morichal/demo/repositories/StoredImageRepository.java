@@ -0,0 +1,31 @@
+package com.morichal.demo.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.morichal.demo.models.StoredImage;
+
+@Repository
+public interface StoredImageRepository extends JpaRepository<StoredImage, String> {
+
+    // Contadores con un UPDATE atómico: 0 filas = el fichero no está en el almacén
+    @Transactional
+    @Modifying
+    @Query("update StoredImage s set s.referencias = s.referencias + :n where s.nombre = :nombre")
+    int addReferences(@Param("nombre") String nombre, @Param("n") int n);
+
+    @Transactional
+    @Modifying
+    @Query("update StoredImage s set s.referencias = s.referencias - 1 where s.nombre = :nombre and s.referencias > 0")
+    int release(@Param("nombre") String nombre);
+
+    // 1 si era la última referencia: entonces se borra también el fichero
+    @Transactional
+    @Modifying
+    @Query("delete from StoredImage s where s.nombre = :nombre and s.referencias = 0")
+    int deleteIfUnreferenced(@Param("nombre") String nombre);
+}
@@ -1,10 +1,118 @@
 package com.morichal.demo.repositories;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import com.morichal.demo.models.ImageResponseSummary;
+import com.morichal.demo.models.RecordAggregate;
 import com.morichal.demo.models.imageResponse;
 
+import jakarta.persistence.QueryHint;
+
 @Repository
 public interface imageResponseRepository extends JpaRepository<imageResponse, Long> {
-}
\ No newline at end of file
+
+    // Paginación por clave: los registros con id menor que el último ya enviado, del más
+    // reciente al más antiguo. El índice sobre id (o categoria/estado + id) resuelve el salto
+    // sin recorrer las páginas anteriores, por profunda que sea la página
+    @Query("select new com.morichal.demo.models.ImageResponseSummary(r.id, r.text, r.uM, r.categoria, r.estado, r.nombreImagen, r.fechaRegistro) "
+            + "from imageResponse r "
+            + "where r.id < :beforeId "
+            + "and (:categoria is null or r.categoria = :categoria) "
+            + "and (:estado is null or r.estado = :estado) "
+            + "order by r.id desc")
+    List<ImageResponseSummary> findPage(@Param("beforeId") long beforeId, @Param("categoria") String categoria,
+            @Param("estado") String estado, Pageable pageable);
+
+    // Agregaciones en MariaDB: el índice (categoria, estado, u_m, valor) las cubre sin leer filas
+    @Query("select new com.morichal.demo.models.RecordAggregate(r.categoria, r.estado, r.uM, count(r), sum(r.text), min(r.text), max(r.text)) "
+            + "from imageResponse r "
+            + "group by r.categoria, r.estado, r.uM "
+            + "order by r.categoria, r.estado, r.uM")
+    List<RecordAggregate> aggregateByGroup();
+
+    @Query("select new com.morichal.demo.models.RecordAggregate(r.categoria, r.estado, r.uM, count(r), sum(r.text), min(r.text), max(r.text)) "
+            + "from imageResponse r "
+            + "where r.fechaRegistro >= :desde and r.fechaRegistro < :hasta "
+            + "group by r.categoria, r.estado, r.uM "
+            + "order by r.categoria, r.estado, r.uM")
+    List<RecordAggregate> aggregateByGroupBetween(@Param("desde") LocalDateTime desde, @Param("hasta") LocalDateTime hasta);
+
+    // Serie temporal: date_format agrupa por hora, día, semana o mes; el rango usa el índice
+    // (fecha_registro, u_m, valor). Columnas: intervalo, unidad, cantidad, total, mínimo, máximo
+    @Query(value = "select date_format(r.fecha_registro, :formato) as bucket, r.u_m, count(*), sum(r.valor), min(r.valor), max(r.valor) "
+            + "from image_response r "
+            + "where r.fecha_registro >= :desde and r.fecha_registro < :hasta "
+            + "and (:categoria is null or r.categoria = :categoria) "
+            + "and (:estado is null or r.estado = :estado) "
+            + "group by bucket, r.u_m "
+            + "order by bucket, r.u_m", nativeQuery = true)
+    List<Object[]> aggregateSeries(@Param("formato") String formato, @Param("desde") LocalDateTime desde,
+            @Param("hasta") LocalDateTime hasta, @Param("categoria") String categoria, @Param("estado") String estado);
+
+    // Content-Type de la imagen de registros anteriores a la columna tipo_imagen
+    @Transactional
+    @Modifying
+    @Query("update imageResponse r set r.tipoImagen = :tipo where r.id = :id and r.tipoImagen is null")
+    int fillContentType(@Param("id") Long id, @Param("tipo") String tipo);
+
+    // Migración al almacén por contenido: nombres de imagen todavía con el formato antiguo
+    @Query("select distinct r.nombreImagen from imageResponse r where r.nombreImagen is not null")
+    List<String> findDistinctImageNames();
+
+    long countByNombreImagen(String nombreImagen);
+
+    @Transactional
+    @Modifying
+    @Query("update imageResponse r set r.nombreImagen = :nuevo where r.nombreImagen = :antiguo")
+    int renameImage(@Param("antiguo") String antiguo, @Param("nuevo") String nuevo);
+
+    // Reconciliación: registros que usan cada fichero de un lote del directorio de imágenes.
+    // Columnas: nombre, cantidad (los que no aparecen no tienen ningún registro)
+    @Query("select r.nombreImagen, count(r) from imageResponse r where r.nombreImagen in :nombres group by r.nombreImagen")
+    List<Object[]> countByImageNames(@Param("nombres") Collection<String> nombres);
+
+    // Reconciliación: registros con imagen, por clave y en orden ascendente.
+    // Columnas: id, nombre de la imagen, marca de imagen perdida
+    @Query("select r.id, r.nombreImagen, r.imagenPerdida from imageResponse r "
+            + "where r.id > :afterId and r.nombreImagen is not null "
+            + "order by r.id")
+    List<Object[]> findImageRefsAfter(@Param("afterId") long afterId, Pageable pageable);
+
+    @Transactional
+    @Modifying
+    @Query("update imageResponse r set r.imagenPerdida = :perdida where r.id in :ids")
+    int markImageMissing(@Param("ids") Collection<Long> ids, @Param("perdida") Boolean perdida);
+
+    // Exportación: se recorre con un cursor JDBC de EXPORT_FETCH_SIZE filas (el driver de
+    // MariaDB no trae el resultado entero) y sin entidades gestionadas. Hay que consumirlo
+    // dentro de una transacción y cerrarlo
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = EXPORT_FETCH_SIZE),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+        @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false")
+    })
+    @Query("select new com.morichal.demo.models.ImageResponseSummary(r.id, r.text, r.uM, r.categoria, r.estado, r.nombreImagen, r.fechaRegistro) "
+            + "from imageResponse r "
+            + "where (:categoria is null or r.categoria = :categoria) "
+            + "and (:estado is null or r.estado = :estado) "
+            + "and (:desde is null or r.fechaRegistro >= :desde) "
+            + "and (:hasta is null or r.fechaRegistro < :hasta) "
+            + "order by r.id")
+    Stream<ImageResponseSummary> streamForExport(@Param("categoria") String categoria, @Param("estado") String estado,
+            @Param("desde") LocalDateTime desde, @Param("hasta") LocalDateTime hasta);
+
+    String EXPORT_FETCH_SIZE = "500";
+}
@@ -0,0 +1,177 @@
+package com.morichal.demo.services;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+
+import com.morichal.demo.models.DisplayRegion;
+
+/**
+ * Localiza la zona de dígitos de la pantalla antes de la cascada OCR, para que las
+ * estrategias escalen y reconozcan solo esa parte de la foto.
+ *
+ * Trabaja sobre una miniatura en gris: marca los bordes verticales de los trazos (dígitos
+ * claros sobre oscuro u oscuros sobre claro; los marcos y bordes de mesa, casi siempre
+ * horizontales, apenas cuentan) y usa sus proyecciones por filas y por columnas para
+ * quedarse con la franja y el bloque de mayor energía.
+ */
+public class DisplayRegionDetector {
+
+    // Ancho de la miniatura de análisis
+    private static final int ANCHO_ANALISIS = 320;
+    // Diferencia mínima de gris entre vecinos para contar un borde
+    private static final int UMBRAL_BORDE = 32;
+    // Margen añadido alrededor de la zona detectada, relativo a su alto
+    private static final double MARGEN = 0.4;
+    // Si la zona ocupa casi toda la imagen no merece la pena recortar
+    private static final double AREA_MAXIMA = 0.85;
+    // Tamaño mínimo de la zona en la miniatura
+    private static final int ALTO_MINIMO = 8;
+    private static final int ANCHO_MINIMO = 16;
+
+    /**
+     * Devuelve la zona de dígitos en coordenadas de la imagen original, o null si no
+     * hay una zona clara (en ese caso se usa la imagen completa).
+     */
+    public DisplayRegion detect(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double factor = width > ANCHO_ANALISIS ? (double) width / ANCHO_ANALISIS : 1.0;
+        int w = Math.max(1, (int) Math.round(width / factor));
+        int h = Math.max(1, (int) Math.round(height / factor));
+        if (w < ANCHO_MINIMO || h < ALTO_MINIMO) {
+            return null;
+        }
+
+        BufferedImage small = ImagePreprocessor.toGray(ImagePreprocessor.scale(image, w, h, false));
+        byte[] gray = ((DataBufferByte) small.getRaster().getDataBuffer()).getData();
+        boolean[] edges = edgeMap(gray, w, h);
+
+        // Franja horizontal con más bordes: la fila de dígitos
+        int[] rows = new int[h];
+        for (int y = 0; y < h; y++) {
+            int count = 0;
+            for (int x = 0, i = y * w; x < w; x++, i++) {
+                if (edges[i]) {
+                    count++;
+                }
+            }
+            rows[y] = count;
+        }
+        int[] band = strongestRun(smooth(rows, Math.max(1, h / 40)), Math.max(1, h / 20));
+        if (band == null || band[1] - band[0] + 1 < ALTO_MINIMO) {
+            return null;
+        }
+        int top = band[0];
+        int bottom = band[1];
+        int bandHeight = bottom - top + 1;
+
+        // Dentro de la franja, bloque de columnas con más bordes (los huecos entre dígitos
+        // son menores que el alto de un dígito y se unen)
+        int[] cols = new int[w];
+        for (int y = top; y <= bottom; y++) {
+            for (int x = 0, i = y * w; x < w; x++, i++) {
+                if (edges[i]) {
+                    cols[x]++;
+                }
+            }
+        }
+        int[] block = strongestRun(cols, bandHeight);
+        if (block == null || block[1] - block[0] + 1 < ANCHO_MINIMO) {
+            return null;
+        }
+
+        int margin = (int) Math.ceil(bandHeight * MARGEN);
+        int x0 = Math.max(0, block[0] - margin);
+        int x1 = Math.min(w - 1, block[1] + margin);
+        int y0 = Math.max(0, top - margin);
+        int y1 = Math.min(h - 1, bottom + margin);
+        if ((double) (x1 - x0 + 1) * (y1 - y0 + 1) > AREA_MAXIMA * w * h) {
+            return null;
+        }
+
+        // De la miniatura a la imagen original
+        int rx = (int) Math.floor(x0 * factor);
+        int ry = (int) Math.floor(y0 * factor);
+        int rw = Math.min(width, (int) Math.ceil((x1 + 1) * factor)) - rx;
+        int rh = Math.min(height, (int) Math.ceil((y1 + 1) * factor)) - ry;
+        return new DisplayRegion(rx, ry, rw, rh);
+    }
+
+    // Bordes verticales: diferencia horizontal |g(x+1) - g(x-1)| por encima del umbral
+    private static boolean[] edgeMap(byte[] gray, int w, int h) {
+        boolean[] edges = new boolean[w * h];
+        for (int y = 0; y < h; y++) {
+            int base = y * w;
+            for (int x = 1; x < w - 1; x++) {
+                int diff = (gray[base + x + 1] & 0xFF) - (gray[base + x - 1] & 0xFF);
+                edges[base + x] = diff >= UMBRAL_BORDE || diff <= -UMBRAL_BORDE;
+            }
+        }
+        return edges;
+    }
+
+    // Media móvil de radio r: une los segmentos horizontales de un mismo dígito
+    private static int[] smooth(int[] profile, int r) {
+        int[] result = new int[profile.length];
+        long sum = 0;
+        for (int i = 0; i < Math.min(r, profile.length); i++) {
+            sum += profile[i];
+        }
+        for (int i = 0; i < profile.length; i++) {
+            if (i + r < profile.length) {
+                sum += profile[i + r];
+            }
+            if (i - r - 1 >= 0) {
+                sum -= profile[i - r - 1];
+            }
+            result[i] = (int) (sum / (2 * r + 1));
+        }
+        return result;
+    }
+
+    /**
+     * Tramo contiguo [inicio, fin] de posiciones por encima de media + 0,5·desviación,
+     * uniendo huecos de hasta {@code maxGap}, con la mayor suma. Null si no hay ninguno.
+     */
+    static int[] strongestRun(int[] profile, int maxGap) {
+        double mean = 0;
+        for (int v : profile) {
+            mean += v;
+        }
+        mean /= profile.length;
+        double variance = 0;
+        for (int v : profile) {
+            variance += (v - mean) * (v - mean);
+        }
+        double threshold = Math.max(1.0, mean + 0.5 * Math.sqrt(variance / profile.length));
+
+        int[] best = null;
+        long bestSum = 0;
+        int start = -1;
+        int lastActive = -1;
+        long sum = 0;
+        for (int i = 0; i <= profile.length; i++) {
+            boolean active = i < profile.length && profile[i] >= threshold;
+            if (active && start >= 0 && i - lastActive - 1 > maxGap) {
+                // Hueco demasiado grande: se cierra el tramo actual
+                if (sum > bestSum) {
+                    bestSum = sum;
+                    best = new int[] {start, lastActive};
+                }
+                start = -1;
+            }
+            if (active) {
+                if (start < 0) {
+                    start = i;
+                    sum = 0;
+                }
+                sum += profile[i];
+                lastActive = i;
+            }
+        }
+        if (start >= 0 && sum > bestSum) {
+            best = new int[] {start, lastActive};
+        }
+        return best;
+    }
+}
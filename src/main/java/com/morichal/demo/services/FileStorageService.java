@@ -1,50 +1,150 @@
 package com.morichal.demo.services;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Locale;
 import java.util.UUID;
+import java.util.function.ToLongFunction;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import com.morichal.demo.models.StoredImage;
+import com.morichal.demo.repositories.StoredImageRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Almacén de imágenes direccionado por contenido: cada fichero se llama como el SHA-256 de
+ * sus bytes y se guarda en dos niveles de subdirectorios (ab/cd/abcd….jpg), de modo que
+ * ningún directorio crece sin límite. Las subidas idénticas comparten fichero y cada
+ * registro que lo usa cuenta como una referencia (tabla stored_image).
+ */
 @Service
 public class FileStorageService {
 
+    // SHA-256 en hexadecimal y extensión; los nombres antiguos (UUID) siguen en la raíz
+    private static final Pattern NOMBRE_CONTENIDO = Pattern.compile("[0-9a-f]{64}\\.[a-z0-9]+");
+
+    // Alta y baja del mismo contenido, una cada vez: el contador y el fichero van a la par
+    private final Object[] locks = new Object[64];
+
     @Value("${app.upload.path}")
     private String uploadPath;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ImageDerivativeStore imageDerivativeStore;
+
+    @Autowired
+    private StoredImageRepository storedImageRepository;
+
+    public FileStorageService() {
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
     public String guardarImagen(MultipartFile archivo) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        Path parcial = null;
         try {
-            // Crear directorio si no existe
-            Path directorioUpload = Paths.get(uploadPath);
-            if (!Files.exists(directorioUpload)) {
-                Files.createDirectories(directorioUpload);
+            // Se copia una vez calculando el hash por el camino; el nombre final sale de él
+            parcial = nuevoParcial();
+            MessageDigest digest = sha256();
+            long bytes;
+            try (InputStream in = new DigestInputStream(archivo.getInputStream(), digest)) {
+                bytes = Files.copy(in, parcial, StandardCopyOption.REPLACE_EXISTING);
             }
+            // Extensión según el contenido; la que puso el cliente solo si no es un formato conocido
+            ImageFormat format = formatoDe(parcial);
+            String extension = format != null ? format.extension() : obtenerExtension(archivo.getOriginalFilename());
+            String nombreArchivo = confirmarParcial(parcial, HexFormat.of().formatHex(digest.digest()), extension, bytes);
+            parcial = null;
+            return nombreArchivo;
 
-            // Generar nombre único para el archivo
-            String extension = obtenerExtension(archivo.getOriginalFilename());
-            String nombreArchivo = UUID.randomUUID().toString() + "." + extension;
+        } catch (IOException e) {
+            throw new RuntimeException("Error al guardar la imagen: " + e.getMessage());
+        } finally {
+            if (parcial != null) {
+                descartarParcial(parcial);
+            }
+            sample.stop(storageTimer("save"));
+        }
+    }
 
-            // Guardar archivo
-            Path rutaArchivo = directorioUpload.resolve(nombreArchivo);
-            Files.copy(archivo.getInputStream(), rutaArchivo, StandardCopyOption.REPLACE_EXISTING);
+    // Fichero parcial en el propio directorio de imágenes: al confirmarlo se renombra, sin copiar
+    public Path nuevoParcial() throws IOException {
+        Path directorioUpload = Paths.get(uploadPath);
+        Files.createDirectories(directorioUpload);
+        return directorioUpload.resolve(UUID.randomUUID().toString() + ".part");
+    }
 
-            return nombreArchivo;
+    /**
+     * Pasa un parcial ya escrito al almacén con el nombre de su contenido y suma una referencia.
+     * Si ese contenido ya estaba guardado, el parcial se borra y se comparte el fichero existente.
+     *
+     * @param sha256 hash del contenido en hexadecimal
+     * @return nombre con el que queda guardada
+     */
+    public String confirmarParcial(Path parcial, String sha256, String extension, long bytes) throws IOException {
+        String nombreArchivo = sha256 + "." + extension;
+        Path rutaArchivo = ruta(nombreArchivo);
+        synchronized (lock(nombreArchivo)) {
+            boolean registrada = storedImageRepository.addReferences(nombreArchivo, 1) > 0;
+            if (registrada && Files.exists(rutaArchivo)) {
+                Files.delete(parcial);
+                // Vuelve a ser reciente: la reconciliación no lo toma por huérfano mientras
+                // se guarda el registro que lo usa
+                Files.setLastModifiedTime(rutaArchivo, FileTime.from(Instant.now()));
+                meterRegistry.counter("storage.dedup.hits").increment();
+                return nombreArchivo;
+            }
+            Files.createDirectories(rutaArchivo.getParent());
+            Files.move(parcial, rutaArchivo, StandardCopyOption.ATOMIC_MOVE);
+            if (!registrada) {
+                storedImageRepository.save(new StoredImage(nombreArchivo, 1, bytes));
+            }
+        }
+        meterRegistry.summary("storage.bytes", "op", "save").record(bytes);
+        imageDerivativeStore.generarEnSegundoPlano(nombreArchivo, rutaArchivo);
+        return nombreArchivo;
+    }
 
+    public void descartarParcial(Path parcial) {
+        try {
+            Files.deleteIfExists(parcial);
         } catch (IOException e) {
-            throw new RuntimeException("Error al guardar la imagen: " + e.getMessage());
+            // Un .part que no se pudo borrar no lo referencia ningún registro
         }
     }
 
     public Resource cargarImagen(String nombreArchivo) {
+        Timer.Sample sample = Timer.start(meterRegistry);
         try {
-            Path rutaArchivo = Paths.get(uploadPath).resolve(nombreArchivo);
+            Path rutaArchivo = ruta(nombreArchivo);
             Resource resource = new UrlResource(rutaArchivo.toUri());
 
             if (resource.exists() && resource.isReadable()) {
@@ -55,15 +155,251 @@ public class FileStorageService {
 
         } catch (Exception e) {
             throw new RuntimeException("Error al cargar la imagen: " + e.getMessage());
+        } finally {
+            sample.stop(storageTimer("load"));
+        }
+    }
+
+    /** Ruta, tamaño y fecha de modificación de una imagen guardada (una sola llamada al sistema de ficheros). */
+    public ImageFile archivoImagen(String nombreArchivo) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            Path rutaArchivo = ruta(nombreArchivo);
+            BasicFileAttributes attributes = Files.readAttributes(rutaArchivo, BasicFileAttributes.class);
+            return new ImageFile(nombreArchivo, rutaArchivo, attributes.size(), attributes.lastModifiedTime().toMillis());
+        } catch (NoSuchFileException e) {
+            throw new RuntimeException("No se pudo leer el archivo: " + nombreArchivo);
+        } catch (IOException e) {
+            throw new RuntimeException("Error al cargar la imagen: " + e.getMessage());
+        } finally {
+            sample.stop(storageTimer("stat"));
         }
     }
 
+    public record ImageFile(String nombre, Path path, long size, long lastModified) {
+    }
+
+    /** Miniatura o versión mediana de una imagen guardada (se genera si todavía no existe). */
+    public ImageFile archivoDerivado(String nombreArchivo, ImageDerivativeStore.Size size) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            Path original = ruta(nombreArchivo);
+            Path derivada = imageDerivativeStore.obtener(nombreArchivo, original, size);
+            BasicFileAttributes attributes = Files.readAttributes(derivada, BasicFileAttributes.class);
+            return new ImageFile(ImageDerivativeStore.nombre(nombreArchivo, size), derivada, attributes.size(),
+                    attributes.lastModifiedTime().toMillis());
+        } catch (NoSuchFileException e) {
+            throw new RuntimeException("No se pudo leer el archivo: " + nombreArchivo);
+        } catch (IOException e) {
+            throw new RuntimeException("Error al generar la imagen reducida: " + e.getMessage());
+        } finally {
+            sample.stop(storageTimer("derivative"));
+        }
+    }
+
+    /**
+     * Content-Type de una imagen guardada según sus primeros bytes (no según la extensión
+     * que puso el cliente). Se calcula al guardarla y se conserva en el registro.
+     */
+    public String tipoDeImagen(String nombreArchivo) {
+        ImageFormat format;
+        try {
+            format = formatoDe(ruta(nombreArchivo));
+        } catch (IOException e) {
+            throw new RuntimeException("Error al leer la imagen: " + e.getMessage());
+        }
+        return format == null ? "application/octet-stream" : format.contentType();
+    }
+
+    /**
+     * Quita la referencia de un registro a la imagen. El fichero (y sus versiones reducidas)
+     * solo se borra si era la última; los nombres antiguos, sin contador, se borran siempre.
+     */
     public void eliminarImagen(String nombreArchivo) {
+        Timer.Sample sample = Timer.start(meterRegistry);
         try {
-            Path rutaArchivo = Paths.get(uploadPath).resolve(nombreArchivo);
-            Files.deleteIfExists(rutaArchivo);
+            // Se valida el nombre antes de tocar el contador
+            Path rutaArchivo = ruta(nombreArchivo);
+            synchronized (lock(nombreArchivo)) {
+                boolean liberada = storedImageRepository.release(nombreArchivo) > 0;
+                boolean ultima = storedImageRepository.deleteIfUnreferenced(nombreArchivo) > 0;
+                if (liberada && !ultima) {
+                    return;
+                }
+                // Un nombre por contenido sin contador puede seguir en uso por otros registros:
+                // lo decide la reconciliación, que recuenta contra ellos
+                if (!liberada && esNombreDeContenido(nombreArchivo)) {
+                    return;
+                }
+                Files.deleteIfExists(rutaArchivo);
+            }
+            imageDerivativeStore.eliminar(nombreArchivo);
         } catch (IOException e) {
             throw new RuntimeException("Error al eliminar la imagen: " + e.getMessage());
+        } finally {
+            sample.stop(storageTimer("delete"));
+        }
+    }
+
+    /**
+     * Copia al almacén por contenido un fichero con nombre antiguo (UUID en la raíz), con las
+     * referencias indicadas, y devuelve su nombre nuevo (null si el fichero no existe). El
+     * antiguo se conserva hasta que se llame a {@link #borrarAntiguo(String)}, tras actualizar
+     * los registros: si el proceso se corta a medias, no se pierde nada.
+     */
+    public String importarAntiguo(String nombreAntiguo, int referencias) throws IOException {
+        Path origen = ruta(nombreAntiguo);
+        if (!Files.isRegularFile(origen)) {
+            return null;
+        }
+        MessageDigest digest = sha256();
+        try (InputStream in = new DigestInputStream(Files.newInputStream(origen), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        ImageFormat format = formatoDe(origen);
+        String extension = format != null ? format.extension() : obtenerExtension(nombreAntiguo);
+        String nombreArchivo = HexFormat.of().formatHex(digest.digest()) + "." + extension;
+        if (nombreArchivo.equals(nombreAntiguo)) {
+            // Ya está con el nombre de su contenido: no se cuenta dos veces
+            return nombreArchivo;
+        }
+        Path rutaArchivo = ruta(nombreArchivo);
+
+        synchronized (lock(nombreArchivo)) {
+            boolean registrada = storedImageRepository.addReferences(nombreArchivo, referencias) > 0;
+            if (!Files.exists(rutaArchivo)) {
+                Files.createDirectories(rutaArchivo.getParent());
+                Path parcial = rutaArchivo.resolveSibling(rutaArchivo.getFileName() + ".part");
+                try {
+                    // Enlace duro (sin copiar los datos) si el sistema de ficheros lo permite
+                    Files.createLink(parcial, origen);
+                } catch (UnsupportedOperationException | IOException e) {
+                    Files.copy(origen, parcial, StandardCopyOption.REPLACE_EXISTING);
+                }
+                Files.move(parcial, rutaArchivo, StandardCopyOption.ATOMIC_MOVE);
+            } else {
+                meterRegistry.counter("storage.dedup.hits").increment();
+            }
+            if (!registrada) {
+                storedImageRepository.save(new StoredImage(nombreArchivo, referencias, Files.size(rutaArchivo)));
+            }
+        }
+        return nombreArchivo;
+    }
+
+    public void borrarAntiguo(String nombreAntiguo) throws IOException {
+        if (!esNombreDeContenido(nombreAntiguo)) {
+            Files.deleteIfExists(ruta(nombreAntiguo));
+            imageDerivativeStore.eliminar(nombreAntiguo);
+        }
+    }
+
+    /**
+     * Todos los ficheros del directorio de imágenes (también los .part), sin cargarlos en
+     * memoria. Hay que cerrar el stream.
+     */
+    public Stream<Path> recorrerImagenes() throws IOException {
+        Path raiz = Paths.get(uploadPath);
+        if (!Files.isDirectory(raiz)) {
+            return Stream.empty();
+        }
+        return Files.walk(raiz, 3).filter(Files::isRegularFile);
+    }
+
+    /**
+     * Borra una imagen que ningún registro usa, con su fila de stored_image y sus versiones
+     * reducidas. Se vuelve a comprobar bajo el bloqueo del nombre y no se toca si se modificó
+     * después de {@code limite} (una subida en curso todavía no tiene registro).
+     *
+     * @param registros registros que la usan ahora mismo
+     * @return bytes liberados, 0 si no se borró
+     */
+    public long eliminarHuerfana(Path archivo, Instant limite, ToLongFunction<String> registros) throws IOException {
+        String nombreArchivo = archivo.getFileName().toString();
+        if (!archivo.equals(ruta(nombreArchivo))) {
+            // Fuera de su sitio en el almacén: no es una imagen que pueda referenciar un registro
+            return 0;
+        }
+        long bytes;
+        synchronized (lock(nombreArchivo)) {
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(archivo, BasicFileAttributes.class);
+            } catch (NoSuchFileException e) {
+                return 0;
+            }
+            if (attributes.lastModifiedTime().toInstant().isAfter(limite) || registros.applyAsLong(nombreArchivo) > 0) {
+                return 0;
+            }
+            Files.delete(archivo);
+            storedImageRepository.deleteById(nombreArchivo);
+            bytes = attributes.size();
+        }
+        imageDerivativeStore.eliminar(nombreArchivo);
+        return bytes;
+    }
+
+    /**
+     * Ajusta el contador de referencias de una imagen del almacén por contenido a los
+     * registros que la usan. Solo hacia arriba: un contador de más solo retrasa el borrado,
+     * uno de menos borraría un fichero en uso.
+     *
+     * @return true si hubo que corregirlo
+     */
+    public boolean repararReferencias(String nombreArchivo, long registros) throws IOException {
+        if (!esNombreDeContenido(nombreArchivo)) {
+            return false;
+        }
+        synchronized (lock(nombreArchivo)) {
+            StoredImage stored = storedImageRepository.findById(nombreArchivo).orElse(null);
+            if (stored == null) {
+                storedImageRepository.save(new StoredImage(nombreArchivo, (int) registros, Files.size(ruta(nombreArchivo))));
+                return true;
+            }
+            if (stored.getReferencias() < registros) {
+                storedImageRepository.addReferences(nombreArchivo, (int) (registros - stored.getReferencias()));
+                return true;
+            }
+            return false;
+        }
+    }
+
+    public static boolean esNombreDeContenido(String nombreArchivo) {
+        return NOMBRE_CONTENIDO.matcher(nombreArchivo).matches();
+    }
+
+    // Ruta de una imagen: ab/cd/<hash>.<ext> para las del almacén por contenido, la raíz para las antiguas.
+    // Un nombre antiguo tiene que quedar directamente en la raíz (sin "..", barras ni rutas absolutas)
+    Path ruta(String nombreArchivo) {
+        Path raiz = Paths.get(uploadPath);
+        if (esNombreDeContenido(nombreArchivo)) {
+            return raiz.resolve(nombreArchivo.substring(0, 2)).resolve(nombreArchivo.substring(2, 4)).resolve(nombreArchivo);
+        }
+        Path rutaArchivo = raiz.resolve(nombreArchivo);
+        if (nombreArchivo.isEmpty() || !raiz.normalize().equals(rutaArchivo.normalize().getParent())) {
+            throw new IllegalArgumentException("Nombre de imagen no válido: " + nombreArchivo);
+        }
+        return rutaArchivo;
+    }
+
+    private Object lock(String nombreArchivo) {
+        return locks[Math.floorMod(nombreArchivo.hashCode(), locks.length)];
+    }
+
+    private static ImageFormat formatoDe(Path archivo) throws IOException {
+        byte[] header = new byte[ImageFormat.HEADER_LENGTH];
+        int leidos;
+        try (InputStream in = Files.newInputStream(archivo)) {
+            leidos = in.readNBytes(header, 0, header.length);
+        }
+        return ImageFormat.detect(header, leidos);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
         }
     }
 
@@ -77,11 +413,24 @@ public class FileStorageService {
             return "jpg"; // Sin extensión, usar jpg por defecto
         }
         
-        return nombreArchivo.substring(ultimoPunto + 1).toLowerCase();
+        // Solo [a-z0-9]: el nombre guardado tiene que ser siempre un nombre por contenido
+        String extension = nombreArchivo.substring(ultimoPunto + 1).toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]", "");
+        return extension.isEmpty() ? "jpg" : extension;
     }
 
     public boolean existeImagen(String nombreArchivo) {
-        Path rutaArchivo = Paths.get(uploadPath).resolve(nombreArchivo);
-        return Files.exists(rutaArchivo);
+        Path rutaArchivo;
+        try {
+            rutaArchivo = ruta(nombreArchivo);
+        } catch (IllegalArgumentException e) {
+            // Un nombre que no puede estar en el almacén cuenta como imagen perdida
+            return false;
+        }
+        return storageTimer("exists").record(() -> Files.exists(rutaArchivo));
+    }
+
+    // Tiempo de cada operación sobre el disco (storage.operation{op=...})
+    private Timer storageTimer(String operation) {
+        return meterRegistry.timer("storage.operation", "op", operation);
     }
 }
@@ -0,0 +1,99 @@
+package com.morichal.demo.services;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Iterator;
+
+import javax.imageio.IIOException;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+
+import com.morichal.demo.models.DisplayRegion;
+
+/**
+ * Decodificación única de la imagen subida. Lee primero las dimensiones de la cabecera
+ * y, si el lado mayor supera {@code maxDimension}, decodifica ya submuestreada
+ * (1 de cada n píxeles) en lugar de reservar el raster completo de una foto de móvil.
+ * Todas las estrategias de la petición comparten el resultado y no lo modifican.
+ */
+public class ImageDecoder {
+
+    private final int maxDimension;
+
+    // maxDimension <= 0: siempre a resolución completa
+    public ImageDecoder(int maxDimension) {
+        this.maxDimension = maxDimension;
+    }
+
+    /** Imagen decodificada, o null si ningún lector reconoce el formato. */
+    public Decoded decode(byte[] content) throws IOException {
+        // En memoria: ImageIO.createImageInputStream usaría un fichero temporal como caché
+        try (ImageInputStream input = new MemoryCacheImageInputStream(new ByteArrayInputStream(content))) {
+            return decode(input);
+        }
+    }
+
+    /**
+     * Igual que {@link #decode(byte[])} leyendo de un stream ya abierto; lo cierra quien lo abrió.
+     *
+     * @throws IllegalArgumentException si el formato se reconoce pero los datos están truncados
+     *                                  o corruptos (error del cliente, no del servidor)
+     */
+    public Decoded decode(ImageInputStream input) throws IOException {
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if (!readers.hasNext()) {
+            return null;
+        }
+        ImageReader reader = readers.next();
+        try {
+            reader.setInput(input, true, true);
+            // Solo cabecera: todavía no se ha decodificado ningún píxel
+            int width = reader.getWidth(0);
+            int height = reader.getHeight(0);
+            int subsampling = subsampling(width, height);
+
+            ImageReadParam param = reader.getDefaultReadParam();
+            if (subsampling > 1) {
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+            }
+            return new Decoded(reader.read(0, param), width, height, subsampling);
+        } catch (IIOException e) {
+            throw new IllegalArgumentException("No se pudo decodificar la imagen.", e);
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    int subsampling(int width, int height) {
+        int longest = Math.max(width, height);
+        if (maxDimension <= 0 || longest <= maxDimension) {
+            return 1;
+        }
+        return (int) Math.ceil(longest / (double) maxDimension);
+    }
+
+    /**
+     * @param image        raster decodificado (compartido, de solo lectura)
+     * @param sourceWidth  ancho original según la cabecera
+     * @param sourceHeight alto original según la cabecera
+     * @param subsampling  factor aplicado al decodificar (1 = resolución completa)
+     */
+    public record Decoded(BufferedImage image, int sourceWidth, int sourceHeight, int subsampling) {
+
+        // Zona detectada sobre el raster, en píxeles de la imagen original
+        public DisplayRegion toSource(DisplayRegion region) {
+            if (region == null || subsampling == 1) {
+                return region;
+            }
+            int x = region.x() * subsampling;
+            int y = region.y() * subsampling;
+            return new DisplayRegion(x, y,
+                    Math.min(region.width() * subsampling, sourceWidth - x),
+                    Math.min(region.height() * subsampling, sourceHeight - y));
+        }
+    }
+}
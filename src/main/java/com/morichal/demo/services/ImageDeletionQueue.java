@@ -0,0 +1,79 @@
+package com.morichal.demo.services;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Borrado de imágenes en segundo plano: la petición que borra o sustituye un registro
+ * solo encola el nombre y un único hilo quita la referencia (y el fichero, si era la
+ * última). La cola está en memoria; lo que se pierda por un reinicio o por la cola
+ * llena lo borra después {@link ImageStoreReconciler}.
+ */
+@Component
+public class ImageDeletionQueue {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageDeletionQueue.class);
+
+    @Autowired
+    @Qualifier("imageDeletionExecutor")
+    private ThreadPoolExecutor imageDeletionExecutor;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    public record QueueStats(int pending, long completed, long failed, long dropped) {
+    }
+
+    @PostConstruct
+    void registerMetrics() {
+        Gauge.builder("storage.deletion.pending", imageDeletionExecutor, executor -> executor.getQueue().size())
+                .register(meterRegistry);
+    }
+
+    public void encolar(String nombreImagen) {
+        if (nombreImagen == null || nombreImagen.isEmpty()) {
+            return;
+        }
+        try {
+            imageDeletionExecutor.execute(() -> eliminar(nombreImagen));
+        } catch (RejectedExecutionException e) {
+            dropped.increment();
+            meterRegistry.counter("storage.deletion", "result", "dropped").increment();
+            logger.warn("Cola de borrado llena; {} queda para la reconciliación", nombreImagen);
+        }
+    }
+
+    private void eliminar(String nombreImagen) {
+        try {
+            fileStorageService.eliminarImagen(nombreImagen);
+            completed.increment();
+            meterRegistry.counter("storage.deletion", "result", "done").increment();
+        } catch (RuntimeException e) {
+            failed.increment();
+            meterRegistry.counter("storage.deletion", "result", "failed").increment();
+            logger.warn("No se pudo eliminar la imagen {}: {}", nombreImagen, e.getMessage());
+        }
+    }
+
+    public QueueStats getStats() {
+        return new QueueStats(imageDeletionExecutor.getQueue().size(), completed.sum(), failed.sum(), dropped.sum());
+    }
+}
@@ -0,0 +1,323 @@
+package com.morichal.demo.services;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Stream;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Versiones reducidas (miniatura y mediana) de las imágenes guardadas, en JPEG. Se generan
+ * en segundo plano al guardar el original y, si faltan (registros anteriores, cola llena o
+ * desalojadas), al pedirlas. El directorio funciona como caché en disco con un tamaño
+ * máximo: al superarlo se borran las menos usadas, que se pueden volver a generar.
+ */
+@Component
+public class ImageDerivativeStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageDerivativeStore.class);
+
+    public enum Size {
+        THUMB, MEDIUM;
+
+        /** Tamaño pedido, o null para el original. */
+        public static Size parse(String value) {
+            if (value == null || value.isBlank() || value.equalsIgnoreCase("original")) {
+                return null;
+            }
+            try {
+                return valueOf(value.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Tamaño no válido: " + value + " (thumb, medium u original).");
+            }
+        }
+
+        String key() {
+            return name().toLowerCase();
+        }
+    }
+
+    @Value("${app.derivatives.path:${user.dir}/data/image-derivatives/}")
+    private String derivativesPath;
+
+    @Value("${app.derivatives.thumb-size:200}")
+    private int thumbSize = 200;
+
+    @Value("${app.derivatives.medium-size:1024}")
+    private int mediumSize = 1024;
+
+    @Value("${app.derivatives.jpeg-quality:0.8}")
+    private float jpegQuality = 0.8f;
+
+    @Value("${app.derivatives.max-size:512MB}")
+    private DataSize maxSize = DataSize.ofMegabytes(512);
+
+    @Autowired
+    @Qualifier("imageDerivativeExecutor")
+    private ExecutorService imageDerivativeExecutor;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Derivadas en disco y su tamaño, de la menos a la más usada recientemente
+    private final Map<Path, Long> index = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+    private final Map<Path, CompletableFuture<Path>> inFlight = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() throws IOException {
+        Path root = Paths.get(derivativesPath);
+        Files.createDirectories(root);
+        // Lo que ya había en disco entra en la caché por antigüedad; los .tmp son escrituras interrumpidas
+        List<Path> existing = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(root, 3)) {
+            files.filter(Files::isRegularFile).forEach(existing::add);
+        }
+        List<Map.Entry<Path, BasicFileAttributes>> found = new ArrayList<>();
+        for (Path file : existing) {
+            if (file.getFileName().toString().endsWith(".tmp")) {
+                Files.deleteIfExists(file);
+            } else {
+                found.add(Map.entry(file, Files.readAttributes(file, BasicFileAttributes.class)));
+            }
+        }
+        found.sort(Comparator.comparing(e -> e.getValue().lastModifiedTime()));
+        for (Map.Entry<Path, BasicFileAttributes> entry : found) {
+            register(entry.getKey(), entry.getValue().size());
+        }
+        Gauge.builder("storage.derivatives.bytes", this, s -> s.usedBytes())
+                .description("Espacio ocupado por miniaturas y versiones medianas")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        logger.info("Caché de imágenes reducidas: {} ficheros, {} bytes", found.size(), usedBytes());
+    }
+
+    /** Genera todas las versiones de un original recién guardado sin hacer esperar a la petición. */
+    public void generarEnSegundoPlano(String nombreImagen, Path original) {
+        for (Size size : Size.values()) {
+            // Si la cola está llena se descarta: se generará al pedirla
+            imageDerivativeExecutor.execute(() -> {
+                try {
+                    obtener(nombreImagen, original, size);
+                } catch (IOException | RuntimeException e) {
+                    logger.warn("No se pudo generar la versión {} de {}: {}", size.key(), nombreImagen, e.getMessage());
+                }
+            });
+        }
+    }
+
+    /** Ruta de la versión pedida, generándola ahora si no existe. */
+    public Path obtener(String nombreImagen, Path original, Size size) throws IOException {
+        Path target = ruta(nombreImagen, size);
+        if (contains(target)) {
+            return target;
+        }
+
+        CompletableFuture<Path> mine = new CompletableFuture<>();
+        CompletableFuture<Path> running = inFlight.putIfAbsent(target, mine);
+        if (running != null) {
+            // Otra petición (o la generación en segundo plano) ya la está creando
+            return await(running);
+        }
+        try {
+            if (!contains(target)) {
+                register(target, generate(original, target, size));
+            }
+            mine.complete(target);
+            return target;
+        } catch (IOException | RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(target, mine);
+        }
+    }
+
+    /** Borra todas las versiones de un original (al borrar el original). */
+    public void eliminar(String nombreImagen) {
+        for (Size size : Size.values()) {
+            Path target = ruta(nombreImagen, size);
+            forget(target);
+            try {
+                Files.deleteIfExists(target);
+            } catch (IOException e) {
+                logger.warn("No se pudo borrar {}: {}", target, e.getMessage());
+            }
+        }
+    }
+
+    /** Nombre con el que se sirve la versión (distinto para cada original y tamaño). */
+    public static String nombre(String nombreImagen, Size size) {
+        int punto = nombreImagen.lastIndexOf('.');
+        String base = punto < 0 ? nombreImagen : nombreImagen.substring(0, punto);
+        return base + "-" + size.key() + ".jpg";
+    }
+
+    public long usedBytes() {
+        synchronized (index) {
+            return totalBytes;
+        }
+    }
+
+    // <tamaño>/<2 primeros caracteres>/<nombre>: como el almacén, ningún directorio crece sin límite
+    private Path ruta(String nombreImagen, Size size) {
+        String nombre = nombre(nombreImagen, size);
+        return Paths.get(derivativesPath).resolve(size.key()).resolve(nombre.substring(0, 2)).resolve(nombre);
+    }
+
+    private long generate(Path original, Path target, Size size) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        int maxDimension = size == Size.THUMB ? thumbSize : mediumSize;
+        ImageDecoder.Decoded decoded;
+        try (ImageInputStream input = ImageIO.createImageInputStream(original.toFile())) {
+            if (input == null) {
+                throw new NoSuchFileException(original.toString());
+            }
+            // Submuestreada al leer hasta el doble del tamaño final; el último paso es bilineal
+            decoded = new ImageDecoder(maxDimension * 2).decode(input);
+        }
+        if (decoded == null || decoded.image() == null) {
+            throw new IOException("Formato de imagen no reconocido: " + original.getFileName());
+        }
+
+        Files.createDirectories(target.getParent());
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            writeJpeg(resize(decoded.image(), maxDimension), tmp);
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        sample.stop(meterRegistry.timer("storage.derivative", "size", size.key()));
+        return Files.size(target);
+    }
+
+    // RGB sobre fondo blanco (los PNG con transparencia no se ven negros en el JPEG)
+    static BufferedImage resize(BufferedImage source, int maxDimension) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        double factor = Math.min(1.0, maxDimension / (double) Math.max(width, height));
+        int newWidth = Math.max(1, (int) Math.round(width * factor));
+        int newHeight = Math.max(1, (int) Math.round(height * factor));
+
+        BufferedImage resized = new BufferedImage(newWidth, newHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2 = resized.createGraphics();
+        g2.setColor(Color.WHITE);
+        g2.fillRect(0, 0, newWidth, newHeight);
+        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g2.drawImage(source, 0, 0, newWidth, newHeight, null);
+        g2.dispose();
+        return resized;
+    }
+
+    private void writeJpeg(BufferedImage image, Path file) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(file.toFile())) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private boolean contains(Path target) {
+        synchronized (index) {
+            // get() también la marca como usada
+            return index.get(target) != null;
+        }
+    }
+
+    private void register(Path target, long bytes) {
+        List<Path> evicted = new ArrayList<>();
+        synchronized (index) {
+            Long previous = index.put(target, bytes);
+            totalBytes += bytes - (previous == null ? 0 : previous);
+            Iterator<Map.Entry<Path, Long>> iterator = index.entrySet().iterator();
+            while (totalBytes > maxSize.toBytes() && iterator.hasNext()) {
+                Map.Entry<Path, Long> oldest = iterator.next();
+                if (oldest.getKey().equals(target)) {
+                    continue;
+                }
+                totalBytes -= oldest.getValue();
+                evicted.add(oldest.getKey());
+                iterator.remove();
+            }
+        }
+        for (Path path : evicted) {
+            try {
+                Files.deleteIfExists(path);
+                meterRegistry.counter("storage.derivatives.evictions").increment();
+            } catch (IOException e) {
+                logger.warn("No se pudo desalojar {}: {}", path, e.getMessage());
+            }
+        }
+    }
+
+    private void forget(Path target) {
+        synchronized (index) {
+            Long bytes = index.remove(target);
+            if (bytes != null) {
+                totalBytes -= bytes;
+            }
+        }
+    }
+
+    private static Path await(CompletableFuture<Path> running) throws IOException {
+        try {
+            return running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Generación de la imagen reducida interrumpida.");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+}
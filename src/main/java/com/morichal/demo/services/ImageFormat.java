@@ -0,0 +1,51 @@
+package com.morichal.demo.services;
+
+/** Formatos de imagen admitidos, reconocidos por la firma de sus primeros bytes. */
+enum ImageFormat {
+
+    JPEG("image/jpeg", "jpg", new byte[] {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF}),
+    PNG("image/png", "png", new byte[] {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'});
+
+    /** Bytes que hay que leer para reconocer cualquiera de los formatos. */
+    static final int HEADER_LENGTH = 8;
+
+    private final String contentType;
+    private final String extension;
+    private final byte[] signature;
+
+    ImageFormat(String contentType, String extension, byte[] signature) {
+        this.contentType = contentType;
+        this.extension = extension;
+        this.signature = signature;
+    }
+
+    String contentType() {
+        return contentType;
+    }
+
+    String extension() {
+        return extension;
+    }
+
+    /** Formato según la cabecera, o null si no es ninguno de los admitidos. */
+    static ImageFormat detect(byte[] header, int length) {
+        for (ImageFormat format : values()) {
+            if (matches(header, length, format.signature)) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    private static boolean matches(byte[] header, int length, byte[] signature) {
+        if (length < signature.length) {
+            return false;
+        }
+        for (int i = 0; i < signature.length; i++) {
+            if (header[i] != signature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
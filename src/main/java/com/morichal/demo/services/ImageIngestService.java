@@ -0,0 +1,103 @@
+package com.morichal.demo.services;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Ingesta de una imagen enviada como cuerpo de la petición (image/jpeg o image/png).
+ * En una sola lectura del stream se comprueba el formato por sus primeros bytes, se
+ * calcula el SHA-256, se escribe en el almacén de imágenes (con ese hash como nombre) y,
+ * si se pide, se decodifica. Ni se guarda entera en memoria ni pasa por un fichero temporal aparte.
+ */
+@Service
+public class ImageIngestService {
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private ImageDecoder imageDecoder;
+
+    @Autowired
+    private OcrMetrics ocrMetrics;
+
+    @Value("${spring.servlet.multipart.max-file-size:10MB}")
+    private DataSize maxFileSize = DataSize.ofMegabytes(10);
+
+    /**
+     * @param nombreImagen nombre con el que quedó guardada
+     * @param contentType  formato según los bytes, no según la cabecera del cliente
+     * @param hash         SHA-256 del contenido (mismo formato que {@link OcrResultCache#hash})
+     * @param image        imagen decodificada, o null si no se pidió
+     */
+    public record Ingested(String nombreImagen, String contentType, String hash, long size, ImageDecoder.Decoded image) {
+    }
+
+    public Ingested ingest(InputStream body, boolean decode) throws IOException {
+        MessageDigest digest = sha256();
+        Path parcial = fileStorageService.nuevoParcial();
+        boolean confirmed = false;
+        try (FileChannel file = FileChannel.open(parcial, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                UploadImageInputStream input = new UploadImageInputStream(body, file, digest, maxFileSize.toBytes())) {
+
+            ImageFormat format = sniff(input);
+            input.seek(0);
+
+            ImageDecoder.Decoded image = null;
+            if (decode) {
+                long start = System.nanoTime();
+                image = imageDecoder.decode(input);
+                ocrMetrics.recordDecode(System.nanoTime() - start);
+                if (image == null || image.image() == null) {
+                    throw new IllegalArgumentException("No se pudo decodificar la imagen.");
+                }
+            }
+            input.drain();
+
+            // El nombre final es el hash: una imagen ya guardada se comparte en lugar de duplicarse
+            String hash = HexFormat.of().formatHex(digest.digest());
+            String nombreImagen = fileStorageService.confirmarParcial(parcial, hash, format.extension(), input.received());
+            confirmed = true;
+            return new Ingested(nombreImagen, format.contentType(), hash, input.received(), image);
+        } finally {
+            if (!confirmed) {
+                fileStorageService.descartarParcial(parcial);
+            }
+        }
+    }
+
+    // Formato real por la firma del fichero
+    private static ImageFormat sniff(UploadImageInputStream input) throws IOException {
+        byte[] header = new byte[ImageFormat.HEADER_LENGTH];
+        try {
+            input.readFully(header);
+        } catch (EOFException e) {
+            throw new IllegalArgumentException("No se recibió ninguna imagen válida.");
+        }
+        ImageFormat format = ImageFormat.detect(header, header.length);
+        if (format == null) {
+            throw new IllegalArgumentException("Invalid file type. Only JPEG, JPG, and PNG are allowed.");
+        }
+        return format;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.morichal.demo.services;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Preprocesado de imágenes para OCR trabajando directamente sobre los arrays del
+ * {@code DataBuffer}. Cada variante se calcula en una sola pasada (contraste por canal
+ * con tabla, paso a gris e inversión) y produce una imagen en escala de grises, que es
+ * lo que recibe el motor Tesseract.
+ */
+public final class ImagePreprocessor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImagePreprocessor.class);
+
+    // Pesos de luminancia de Leptonica (los que usa Tesseract al pasar a gris), en 1/256
+    private static final int PESO_R = 77;
+    private static final int PESO_G = 128;
+    private static final int PESO_B = 51;
+
+    private static final byte[] IDENTIDAD = lut(1.0, 0.0);
+    private static final byte[] INVERSA = lut(-1.0, 255.0);
+
+    private ImagePreprocessor() {
+    }
+
+    /** Variantes del último recurso de la cascada, obtenidas con una sola lectura del original. */
+    public record Variants(BufferedImage normal, BufferedImage inverted, BufferedImage highContrast) {
+    }
+
+    // PROCESAMIENTO SEGURO: Evita errores de escalado
+    public static BufferedImage safeScaleAndEnhance(BufferedImage original) {
+        int width = original.getWidth();
+        int height = original.getHeight();
+
+        // Calcular factor de escalado seguro
+        double scaleFactor = 1.0;
+        if (width < 100 || height < 30) {
+            scaleFactor = Math.max(100.0 / width, 30.0 / height);
+            scaleFactor = Math.min(scaleFactor, 5.0); // Máximo 5x
+        }
+
+        int newWidth = Math.max(50, (int)(width * scaleFactor));
+        int newHeight = Math.max(20, (int)(height * scaleFactor));
+
+        logger.debug("Escalado seguro: {}x{} → {}x{}", width, height, newWidth, newHeight);
+
+        // Mejorar contraste (equivale al RescaleOp 1.3x + 10 anterior)
+        return grayWithLut(scale(original, newWidth, newHeight, false), lut(1.3, 10));
+    }
+
+    // PROCESAMIENTO PARA DECIMALES: Específico para 0.336
+    public static BufferedImage enhanceForDecimals(BufferedImage original) {
+        // Escalar moderadamente
+        int newWidth = Math.max(200, original.getWidth() * 3);
+        int newHeight = Math.max(60, original.getHeight() * 3);
+
+        // Aumentar contraste moderadamente para detectar puntos decimales
+        return grayWithLut(scale(original, newWidth, newHeight, false), contrastLut(1.5));
+    }
+
+    // PROCESAMIENTO PARA NÚMEROS LARGOS: Específico para 142976
+    public static BufferedImage enhanceForLongNumbers(BufferedImage original) {
+        // Escalar horizontalmente más que verticalmente para números largos
+        int newWidth = Math.max(400, original.getWidth() * 4);
+        int newHeight = Math.max(80, original.getHeight() * 2);
+
+        // Convertir a escala de grises y aplicar filtro de nitidez
+        BufferedImage gray = grayWithLut(scale(original, newWidth, newHeight, true), IDENTIDAD);
+        return sharpen(gray);
+    }
+
+    public static BufferedImage invertColorsSafe(BufferedImage image) {
+        return grayWithLut(image, INVERSA);
+    }
+
+    public static BufferedImage applyHighContrast(BufferedImage image) {
+        return grayWithLut(image, contrastLut(2.5));
+    }
+
+    public static BufferedImage toGray(BufferedImage image) {
+        if (isCompactGray(image)) {
+            return image;
+        }
+        return grayWithLut(image, IDENTIDAD);
+    }
+
+    // Normal, invertida y alto contraste en una sola pasada sobre el original
+    public static Variants variants(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        BufferedImage normal = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        BufferedImage inverted = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        BufferedImage highContrast = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        byte[] normalPx = pixels(normal);
+        byte[] invertedPx = pixels(inverted);
+        byte[] contrastPx = pixels(highContrast);
+        byte[] contrast = contrastLut(2.5);
+
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            readRow(image, y, row);
+            int base = y * width;
+            for (int x = 0; x < width; x++) {
+                int rgb = row[x];
+                int r = (rgb >> 16) & 0xFF;
+                int g = (rgb >> 8) & 0xFF;
+                int b = rgb & 0xFF;
+                int luma = (r * PESO_R + g * PESO_G + b * PESO_B) >> 8;
+                normalPx[base + x] = (byte) luma;
+                invertedPx[base + x] = (byte) (255 - luma);
+                contrastPx[base + x] = (byte) (((contrast[r] & 0xFF) * PESO_R
+                        + (contrast[g] & 0xFF) * PESO_G
+                        + (contrast[b] & 0xFF) * PESO_B) >> 8);
+            }
+        }
+        return new Variants(normal, inverted, highContrast);
+    }
+
+    // ========== NÚCLEOS ==========
+
+    // Bilineal directamente sobre el destino: sin la imagen intermedia de getScaledInstance
+    static BufferedImage scale(BufferedImage original, int newWidth, int newHeight, boolean antialias) {
+        if (newWidth == original.getWidth() && newHeight == original.getHeight()) {
+            return original;
+        }
+        BufferedImage scaled = new BufferedImage(newWidth, newHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2 = scaled.createGraphics();
+        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        if (antialias) {
+            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        }
+        g2.drawImage(original, 0, 0, newWidth, newHeight, null);
+        g2.dispose();
+        return scaled;
+    }
+
+    // Contraste por canal con la tabla + paso a gris, en una pasada
+    static BufferedImage grayWithLut(BufferedImage image, byte[] lut) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        BufferedImage gray = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        byte[] out = pixels(gray);
+
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            readRow(image, y, row);
+            int base = y * width;
+            for (int x = 0; x < width; x++) {
+                int rgb = row[x];
+                out[base + x] = (byte) (((lut[(rgb >> 16) & 0xFF] & 0xFF) * PESO_R
+                        + (lut[(rgb >> 8) & 0xFF] & 0xFF) * PESO_G
+                        + (lut[rgb & 0xFF] & 0xFF) * PESO_B) >> 8);
+            }
+        }
+        return gray;
+    }
+
+    // Kernel de nitidez 3x3 (centro 5, cruz -1) con bordes a cero, como el ConvolveOp anterior
+    static BufferedImage sharpen(BufferedImage gray) {
+        int width = gray.getWidth();
+        int height = gray.getHeight();
+        byte[] in = pixels(gray);
+        BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        byte[] out = pixels(result);
+
+        for (int y = 1; y < height - 1; y++) {
+            int base = y * width;
+            for (int x = 1; x < width - 1; x++) {
+                int i = base + x;
+                int v = 5 * (in[i] & 0xFF)
+                        - (in[i - 1] & 0xFF) - (in[i + 1] & 0xFF)
+                        - (in[i - width] & 0xFF) - (in[i + width] & 0xFF);
+                out[i] = (byte) (v < 0 ? 0 : (v > 255 ? 255 : v));
+            }
+        }
+        return result;
+    }
+
+    // v * factor + offset, recortado a 0..255
+    static byte[] lut(double factor, double offset) {
+        byte[] table = new byte[256];
+        for (int v = 0; v < 256; v++) {
+            table[v] = (byte) Math.min(255, Math.max(0, (int) (v * factor + offset)));
+        }
+        return table;
+    }
+
+    // (v - 128) * factor + 128, recortado a 0..255
+    static byte[] contrastLut(double factor) {
+        byte[] table = new byte[256];
+        for (int v = 0; v < 256; v++) {
+            table[v] = (byte) Math.min(255, Math.max(0, (int) ((v - 128) * factor + 128)));
+        }
+        return table;
+    }
+
+    // Lee una fila como RGB empaquetado accediendo al buffer según el tipo de imagen
+    private static void readRow(BufferedImage image, int y, int[] row) {
+        Raster raster = image.getRaster();
+        int width = image.getWidth();
+        int tx = raster.getSampleModelTranslateX();
+        int ty = raster.getSampleModelTranslateY();
+
+        if (raster.getDataBuffer() instanceof DataBufferInt intBuffer
+                && raster.getSampleModel() instanceof SinglePixelPackedSampleModel sm
+                && (image.getType() == BufferedImage.TYPE_INT_RGB
+                    || image.getType() == BufferedImage.TYPE_INT_ARGB)) {
+            int offset = intBuffer.getOffset() + sm.getOffset(-tx, y - ty);
+            System.arraycopy(intBuffer.getData(), offset, row, 0, width);
+            return;
+        }
+
+        if (raster.getDataBuffer() instanceof DataBufferByte byteBuffer
+                && raster.getSampleModel() instanceof ComponentSampleModel sm
+                && (image.getType() == BufferedImage.TYPE_3BYTE_BGR
+                    || image.getType() == BufferedImage.TYPE_4BYTE_ABGR
+                    || image.getType() == BufferedImage.TYPE_BYTE_GRAY)) {
+            byte[] data = byteBuffer.getData();
+            int pixelStride = sm.getPixelStride();
+            int[] bandOffsets = sm.getBandOffsets();
+            int offset = byteBuffer.getOffset() + (y - ty) * sm.getScanlineStride() - tx * pixelStride;
+            if (sm.getNumBands() == 1) {
+                offset += bandOffsets[0];
+                for (int x = 0; x < width; x++, offset += pixelStride) {
+                    int v = data[offset] & 0xFF;
+                    row[x] = (v << 16) | (v << 8) | v;
+                }
+            } else {
+                int rOff = bandOffsets[0];
+                int gOff = bandOffsets[1];
+                int bOff = bandOffsets[2];
+                for (int x = 0; x < width; x++, offset += pixelStride) {
+                    row[x] = ((data[offset + rOff] & 0xFF) << 16)
+                            | ((data[offset + gOff] & 0xFF) << 8)
+                            | (data[offset + bOff] & 0xFF);
+                }
+            }
+            return;
+        }
+
+        // Cualquier otro formato: lectura por filas (sigue siendo mucho más rápida que getRGB por píxel)
+        image.getRGB(0, y, width, 1, row, 0, width);
+    }
+
+    private static boolean isCompactGray(BufferedImage image) {
+        return image.getType() == BufferedImage.TYPE_BYTE_GRAY
+                && image.getRaster().getParent() == null
+                && image.getRaster().getDataBuffer().getSize() == image.getWidth() * image.getHeight();
+    }
+
+    private static byte[] pixels(BufferedImage gray) {
+        return ((DataBufferByte) gray.getRaster().getDataBuffer()).getData();
+    }
+}
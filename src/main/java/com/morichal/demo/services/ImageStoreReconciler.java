@@ -0,0 +1,289 @@
+package com.morichal.demo.services;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.morichal.demo.repositories.imageResponseRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Reconciliación periódica entre los registros y el directorio de imágenes, en dos pasadas
+ * por lotes (nunca se carga la lista entera de ficheros ni de registros):
+ * <ul>
+ * <li>ficheros → registros: borra las imágenes que ningún registro usa y los .part
+ * abandonados, y sube los contadores de referencias que se quedaron cortos;</li>
+ * <li>registros → ficheros: marca con {@code imagen_perdida} los registros cuya imagen
+ * no está (y quita la marca si vuelve a estar).</li>
+ * </ul>
+ * Solo se borra lo que lleva más de {@code app.reconcile.grace-minutes} sin modificarse.
+ */
+@Component
+public class ImageStoreReconciler {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageStoreReconciler.class);
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private imageResponseRepository imageResponseRepository;
+
+    @Autowired
+    private RecordCache recordCache;
+
+    @Autowired
+    private ImageDeletionQueue imageDeletionQueue;
+
+    @Autowired
+    @Qualifier("imageReconcileExecutor")
+    private ExecutorService imageReconcileExecutor;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.reconcile.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${app.reconcile.batch-size:500}")
+    private int batchSize = 500;
+
+    @Value("${app.reconcile.grace-minutes:60}")
+    private long graceMinutes = 60;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile ReconcileReport lastReport;
+
+    /** Resultado de una pasada. */
+    public record ReconcileReport(Instant startedAt, Instant finishedAt, long filesScanned, long orphansDeleted,
+            long orphanBytes, long partialsDeleted, long referencesRepaired, long rowsScanned, long rowsMissingFile,
+            long rowsRecovered, long errors) {
+    }
+
+    /** Estado para el endpoint: si hay una pasada en curso, la última terminada y la cola de borrado. */
+    public record ReconcileStatus(boolean running, ReconcileReport lastReport, ImageDeletionQueue.QueueStats deletions) {
+    }
+
+    @Scheduled(fixedDelayString = "${app.reconcile.interval-ms:21600000}",
+            initialDelayString = "${app.reconcile.initial-delay-ms:600000}")
+    void programada() {
+        if (enabled) {
+            lanzar();
+        }
+    }
+
+    /** Lanza una pasada en segundo plano; false si ya hay una en curso. */
+    public boolean lanzar() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            imageReconcileExecutor.execute(() -> {
+                try {
+                    reconciliar();
+                } catch (RuntimeException e) {
+                    logger.error("Error en la reconciliación de imágenes", e);
+                } finally {
+                    running.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            running.set(false);
+            return false;
+        }
+        return true;
+    }
+
+    public ReconcileStatus getStatus() {
+        return new ReconcileStatus(running.get(), lastReport, imageDeletionQueue.getStats());
+    }
+
+    ReconcileReport reconciliar() {
+        Pass pass = new Pass(Instant.now(), Instant.now().minus(Duration.ofMinutes(graceMinutes)));
+        revisarFicheros(pass);
+        revisarRegistros(pass);
+
+        ReconcileReport report = pass.report(Instant.now());
+        lastReport = report;
+        meterRegistry.counter("storage.reconcile.orphans").increment(report.orphansDeleted());
+        meterRegistry.counter("storage.reconcile.missing").increment(report.rowsMissingFile());
+        logger.info("Reconciliación de imágenes: {}", report);
+        return report;
+    }
+
+    // Ficheros → registros, de batchSize en batchSize
+    private void revisarFicheros(Pass pass) {
+        try (Stream<Path> archivos = fileStorageService.recorrerImagenes()) {
+            Iterator<Path> it = archivos.iterator();
+            Map<String, Path> lote = new LinkedHashMap<>();
+            while (it.hasNext()) {
+                Path archivo = it.next();
+                pass.filesScanned++;
+                String nombre = archivo.getFileName().toString();
+                if (nombre.endsWith(".part")) {
+                    descartarParcial(pass, archivo);
+                } else {
+                    lote.put(nombre, archivo);
+                }
+                if (lote.size() >= batchSize) {
+                    revisarLote(pass, lote);
+                    lote.clear();
+                }
+            }
+            if (!lote.isEmpty()) {
+                revisarLote(pass, lote);
+            }
+        } catch (IOException | UncheckedIOException e) {
+            pass.errors++;
+            logger.warn("No se pudo recorrer el directorio de imágenes: {}", e.getMessage());
+        }
+    }
+
+    private void descartarParcial(Pass pass, Path parcial) {
+        try {
+            if (Files.getLastModifiedTime(parcial).toInstant().isBefore(pass.limite)) {
+                fileStorageService.descartarParcial(parcial);
+                pass.partialsDeleted++;
+            }
+        } catch (IOException e) {
+            // Ya no existe: lo confirmó o lo descartó su subida
+        }
+    }
+
+    private void revisarLote(Pass pass, Map<String, Path> lote) {
+        Map<String, Long> registros = new HashMap<>();
+        try {
+            for (Object[] row : imageResponseRepository.countByImageNames(lote.keySet())) {
+                registros.put((String) row[0], ((Number) row[1]).longValue());
+            }
+        } catch (RuntimeException e) {
+            pass.errors++;
+            logger.warn("No se pudo consultar un lote de imágenes: {}", e.getMessage());
+            return;
+        }
+
+        for (Map.Entry<String, Path> entry : lote.entrySet()) {
+            String nombre = entry.getKey();
+            long usos = registros.getOrDefault(nombre, 0L);
+            try {
+                if (usos == 0) {
+                    long bytes = fileStorageService.eliminarHuerfana(entry.getValue(), pass.limite,
+                            imageResponseRepository::countByNombreImagen);
+                    if (bytes > 0) {
+                        pass.orphansDeleted++;
+                        pass.orphanBytes += bytes;
+                    }
+                } else if (fileStorageService.repararReferencias(nombre, usos)) {
+                    pass.referencesRepaired++;
+                }
+            } catch (IOException | RuntimeException e) {
+                pass.errors++;
+                logger.warn("No se pudo reconciliar la imagen {}: {}", nombre, e.getMessage());
+            }
+        }
+    }
+
+    // Registros → ficheros, por clave ascendente
+    private void revisarRegistros(Pass pass) {
+        long afterId = 0;
+        while (true) {
+            List<Object[]> rows;
+            try {
+                rows = imageResponseRepository.findImageRefsAfter(afterId, PageRequest.of(0, batchSize));
+            } catch (RuntimeException e) {
+                pass.errors++;
+                logger.warn("No se pudo leer un lote de registros: {}", e.getMessage());
+                return;
+            }
+            if (rows.isEmpty()) {
+                return;
+            }
+
+            List<Long> perdidos = new ArrayList<>();
+            List<Long> recuperados = new ArrayList<>();
+            for (Object[] row : rows) {
+                Long id = (Long) row[0];
+                String nombre = (String) row[1];
+                boolean marcado = Boolean.TRUE.equals(row[2]);
+                pass.rowsScanned++;
+                if (nombre.isEmpty()) {
+                    continue;
+                }
+                boolean existe = fileStorageService.existeImagen(nombre);
+                if (!existe && !marcado) {
+                    perdidos.add(id);
+                } else if (existe && marcado) {
+                    recuperados.add(id);
+                }
+                if (!existe) {
+                    pass.rowsMissingFile++;
+                }
+            }
+            marcar(pass, perdidos, Boolean.TRUE);
+            marcar(pass, recuperados, null);
+            pass.rowsRecovered += recuperados.size();
+            afterId = (Long) rows.get(rows.size() - 1)[0];
+        }
+    }
+
+    private void marcar(Pass pass, List<Long> ids, Boolean perdida) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        try {
+            imageResponseRepository.markImageMissing(ids, perdida);
+            ids.forEach(recordCache::invalidate);
+        } catch (RuntimeException e) {
+            pass.errors++;
+            logger.warn("No se pudieron marcar {} registros: {}", ids.size(), e.getMessage());
+        }
+    }
+
+    // Contadores de una pasada; solo los toca el hilo de la reconciliación
+    private static final class Pass {
+        final Instant startedAt;
+        final Instant limite;
+        long filesScanned;
+        long orphansDeleted;
+        long orphanBytes;
+        long partialsDeleted;
+        long referencesRepaired;
+        long rowsScanned;
+        long rowsMissingFile;
+        long rowsRecovered;
+        long errors;
+
+        Pass(Instant startedAt, Instant limite) {
+            this.startedAt = startedAt;
+            this.limite = limite;
+        }
+
+        ReconcileReport report(Instant finishedAt) {
+            return new ReconcileReport(startedAt, finishedAt, filesScanned, orphansDeleted, orphanBytes,
+                    partialsDeleted, referencesRepaired, rowsScanned, rowsMissingFile, rowsRecovered, errors);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.morichal.demo.services;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.morichal.demo.models.DisplayRegion;
+import com.morichal.demo.models.OcrResult;
+import com.morichal.demo.models.imageResponse;
+
+/**
+ * OCR de varias imágenes de una sola petición. Las imágenes esperan en un directorio
+ * temporal del lote y solo se leen en memoria las que se están procesando (con un máximo
+ * por lote). Cada resultado se guarda en cuanto termina y después se escribe como una
+ * línea NDJSON, así que lo hecho no se pierde si el cliente corta la conexión.
+ */
+@Service
+public class OcrBatchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OcrBatchService.class);
+
+    @Autowired
+    private OCRService ocrService;
+
+    @Autowired
+    @Qualifier("ocrBatchExecutor")
+    private ExecutorService ocrBatchExecutor;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${ocr.batch.max-per-request:2}")
+    private int maxParallelPerBatch = 2;
+
+    @Value("${ocr.batch.max-files:50}")
+    private int maxFiles = 50;
+
+    /** Imagen del lote copiada a su fichero temporal. */
+    public record BatchImage(String filename, String contentType, Path file) {
+    }
+
+    /** Línea de resultado de una imagen: número e id del registro guardado, o error. */
+    public record ItemResult(String type, int index, String filename, Long id, Double number, String strategy,
+            Float confidence, DisplayRegion region, String error) {
+    }
+
+    /** Última línea del lote con los ids guardados, en el orden de las imágenes (null si falló). */
+    public record BatchSummary(String type, int total, int ok, int failed, List<Long> ids) {
+    }
+
+    public int getMaxFiles() {
+        return maxFiles;
+    }
+
+    /**
+     * Copia las imágenes del multipart a un directorio temporal propio: los ficheros del
+     * multipart se borran al terminar la petición, que con la respuesta en streaming
+     * ocurre antes de procesarlos. {@link #process} borra el directorio al acabar.
+     */
+    public List<BatchImage> receive(List<MultipartFile> images) throws IOException {
+        Path dir = Files.createTempDirectory("ocr-lote-");
+        List<BatchImage> batch = new ArrayList<>(images.size());
+        try {
+            for (MultipartFile image : images) {
+                Path file = dir.resolve(batch.size() + ".img");
+                image.transferTo(file);
+                batch.add(new BatchImage(image.getOriginalFilename(), image.getContentType(), file));
+            }
+        } catch (IOException | RuntimeException e) {
+            discard(batch, dir);
+            throw e;
+        }
+        return batch;
+    }
+
+    public void process(List<BatchImage> images, OutputStream out) throws IOException {
+        ExecutorCompletionService<ItemResult> completion = new ExecutorCompletionService<>(ocrBatchExecutor);
+        List<Future<ItemResult>> futures = new ArrayList<>();
+        ItemResult[] results = new ItemResult[images.size()];
+        int next = 0;
+        int running = 0;
+
+        while (running < Math.max(1, maxParallelPerBatch) && next < images.size()) {
+            futures.add(submit(completion, images, next++));
+            running++;
+        }
+
+        try {
+            while (running > 0) {
+                ItemResult result = take(completion);
+                running--;
+                results[result.index()] = result;
+                writeLine(out, result);
+
+                if (next < images.size()) {
+                    futures.add(submit(completion, images, next++));
+                    running++;
+                }
+            }
+        } finally {
+            // Si el cliente corta la conexión no se sigue procesando el resto
+            for (Future<ItemResult> future : futures) {
+                future.cancel(true);
+            }
+            if (!images.isEmpty()) {
+                discard(images, images.get(0).file().getParent());
+            }
+        }
+
+        writeLine(out, summary(results));
+    }
+
+    private static BatchSummary summary(ItemResult[] results) {
+        List<Long> ids = new ArrayList<>(results.length);
+        int ok = 0;
+        for (ItemResult result : results) {
+            ids.add(result.id());
+            if (result.id() != null) {
+                ok++;
+            }
+        }
+        logger.debug("Lote OCR guardado: {} de {} imágenes", ok, results.length);
+        return new BatchSummary("summary", results.length, ok, results.length - ok, ids);
+    }
+
+    private Future<ItemResult> submit(ExecutorCompletionService<ItemResult> completion, List<BatchImage> images, int index) {
+        BatchImage image = images.get(index);
+        return completion.submit(() -> recognize(index, image));
+    }
+
+    // Se lee el fichero solo al procesarlo y el registro se guarda antes de devolver la línea
+    private ItemResult recognize(int index, BatchImage image) {
+        OcrResult result;
+        try {
+            byte[] content = Files.readAllBytes(image.file());
+            Files.deleteIfExists(image.file());
+            result = ocrService.extractFromBytes(content, image.contentType(), image.filename());
+        } catch (IllegalArgumentException e) {
+            return failed(index, image, e.getMessage());
+        } catch (Exception e) {
+            logger.warn("Error inesperado al procesar {}: {}", image.filename(), e.getMessage());
+            return failed(index, image, "Error al procesar la imagen.");
+        }
+
+        try {
+            imageResponse saved = ocrService.guardar(new imageResponse(result.value()));
+            return new ItemResult("result", index, image.filename(), saved.getId(), result.value(), result.strategy(),
+                    result.confidence(), result.region(), null);
+        } catch (RuntimeException e) {
+            logger.warn("No se pudo guardar el resultado de {}: {}", image.filename(), e.getMessage());
+            return failed(index, image, "Error al guardar el resultado.");
+        }
+    }
+
+    private static ItemResult failed(int index, BatchImage image, String error) {
+        return new ItemResult("result", index, image.filename(), null, null, null, null, null, error);
+    }
+
+    private static void discard(List<BatchImage> images, Path dir) {
+        try {
+            for (BatchImage image : images) {
+                Files.deleteIfExists(image.file());
+            }
+            Files.deleteIfExists(dir);
+        } catch (IOException e) {
+            logger.warn("No se pudo borrar el directorio temporal del lote {}: {}", dir, e.getMessage());
+        }
+    }
+
+    private static ItemResult take(ExecutorCompletionService<ItemResult> completion) throws IOException {
+        try {
+            return completion.take().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Procesamiento del lote interrumpido.");
+        } catch (ExecutionException e) {
+            // recognize ya convierte los errores en resultados; solo llega aquí un Error
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void writeLine(OutputStream out, Object line) throws IOException {
+        out.write(objectMapper.writeValueAsBytes(line));
+        out.write('\n');
+        out.flush();
+    }
+}
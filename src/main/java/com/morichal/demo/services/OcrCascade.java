@@ -0,0 +1,454 @@
+package com.morichal.demo.services;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static com.morichal.demo.services.OcrNumberParser.isValidNumber;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.morichal.demo.models.OcrResult;
+
+/**
+ * Cascada de estrategias OCR sobre una imagen ya decodificada.
+ * Cada estrategia devuelve el número y la confianza de Tesseract en él. En modo secuencial
+ * se prueban en orden hasta que una supera {@code acceptConfidence}; en modo paralelo se
+ * lanzan a la vez (con un máximo por petición) y se acepta el primer valor seguro o en el
+ * que coinciden {@code quorum} estrategias. Si ninguna es segura, gana la más confiable.
+ */
+public class OcrCascade {
+
+    private static final Logger logger = LoggerFactory.getLogger(OcrCascade.class);
+
+    public enum Mode { SEQUENTIAL, PARALLEL }
+
+    private final OcrEnginePool ocrEnginePool;
+    private final ExecutorService executor;
+    private final OcrStrategyStats strategyStats;
+    private final Mode mode;
+    private final int quorum;
+    private final int maxParallelPerRequest;
+
+    // Orden adaptativo: cada exploreEvery peticiones se usa el orden por defecto
+    // para que las estadísticas de todas las estrategias sigan actualizándose
+    private boolean adaptiveOrder;
+    private int exploreEvery;
+    private final AtomicLong runs = new AtomicLong();
+
+    // Confianza (0-100) a partir de la cual se acepta una lectura sin probar más estrategias,
+    // y por debajo de la cual se descarta aunque el número parezca válido.
+    // Con 0 y 0 la primera lectura válida gana, como antes.
+    private float acceptConfidence;
+    private float minConfidence;
+
+    private OcrMetrics metrics = OcrMetrics.noop();
+
+    // Orden de la cascada: básico (rápido), seguro (sin errores de escalado), decimales (0.336),
+    // números largos (142976) y, como último recurso, múltiples enfoques
+    private final List<Strategy> strategies = List.of(
+            new Strategy("basico", this::tryBasicOCR),
+            new Strategy("seguro", this::trySafeOCR),
+            new Strategy("decimal", this::tryDecimalOCR),
+            new Strategy("numeroLargo", this::tryLongNumberOCR),
+            new Strategy("multiEnfoque", this::tryMultiApproachOCR));
+
+
+    // Configuraciones de motor usadas por cada estrategia (las iguales comparten motores del pool)
+    private static final OcrEngineConfig CONFIG_BASICO = OcrEngineConfig.of(-1, OcrEngineConfig.DIGITOS_Y_DECIMALES);
+    private static final OcrEngineConfig CONFIG_SEGURO = OcrEngineConfig.numeric(8, OcrEngineConfig.DIGITOS_Y_DECIMALES);
+    private static final OcrEngineConfig CONFIG_DECIMALES = OcrEngineConfig.of(7, OcrEngineConfig.DIGITOS_Y_DECIMALES);
+    private static final OcrEngineConfig CONFIG_NUMERO_LARGO = OcrEngineConfig.numeric(7, OcrEngineConfig.SOLO_DIGITOS).withDpi(300);
+    private static final OcrEngineConfig CONFIG_ORIGINAL = OcrEngineConfig.of(8, OcrEngineConfig.DIGITOS_Y_DECIMALES);
+    private static final OcrEngineConfig CONFIG_INVERTIDO = OcrEngineConfig.of(7, OcrEngineConfig.DIGITOS_Y_DECIMALES);
+    private static final OcrEngineConfig CONFIG_ALTO_CONTRASTE = OcrEngineConfig.of(6, OcrEngineConfig.DIGITOS_Y_DECIMALES);
+    private static final OcrEngineConfig CONFIG_MULTI_PSM = OcrEngineConfig.numeric(8, OcrEngineConfig.DIGITOS_Y_DECIMALES);
+    // Las pasadas con varios PSM comparten motor e imagen fijada (una OcrSession)
+    private static final int[] PSM_DECIMALES = {7, 8, 13};
+    private static final int[] PSM_MULTI = {8, 7, 6, 13, 10};
+    public OcrCascade(OcrEnginePool ocrEnginePool, ExecutorService executor, OcrStrategyStats strategyStats,
+            Mode mode, int quorum, int maxParallelPerRequest) {
+        this.ocrEnginePool = ocrEnginePool;
+        this.executor = executor;
+        this.strategyStats = strategyStats;
+        this.mode = mode;
+        this.quorum = Math.max(1, quorum);
+        this.maxParallelPerRequest = Math.max(1, maxParallelPerRequest);
+    }
+
+    // Todas las configuraciones de motor que usa la cascada, las más frecuentes primero
+    public Set<OcrEngineConfig> engineConfigs() {
+        return new LinkedHashSet<>(List.of(
+                CONFIG_BASICO, CONFIG_SEGURO, CONFIG_DECIMALES, CONFIG_NUMERO_LARGO,
+                CONFIG_ORIGINAL, CONFIG_ALTO_CONTRASTE, CONFIG_MULTI_PSM));
+    }
+
+    public void setAdaptiveOrder(boolean adaptiveOrder, int exploreEvery) {
+        this.adaptiveOrder = adaptiveOrder;
+        this.exploreEvery = exploreEvery;
+    }
+
+    public void setConfidence(float acceptConfidence, float minConfidence) {
+        this.acceptConfidence = acceptConfidence;
+        this.minConfidence = minConfidence;
+    }
+
+    public void setMetrics(OcrMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public List<String> defaultOrder() {
+        return strategies.stream().map(Strategy::name).toList();
+    }
+
+    // Orden para esta petición según las estadísticas observadas
+    List<Strategy> orderedStrategies() {
+        long run = runs.incrementAndGet();
+        if (!adaptiveOrder || (exploreEvery > 0 && run % exploreEvery == 0)) {
+            return strategies;
+        }
+        List<Strategy> ordered = new ArrayList<>(strategies.size());
+        for (String name : strategyStats.order(defaultOrder())) {
+            for (Strategy strategy : strategies) {
+                if (strategy.name().equals(name)) {
+                    ordered.add(strategy);
+                }
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * Ejecuta la cascada y devuelve el número reconocido, o null si ninguna estrategia
+     * produjo un número válido.
+     */
+    public OcrResult run(BufferedImage original) throws InterruptedException {
+        return mode == Mode.PARALLEL ? runParallel(original) : runSequential(original);
+    }
+
+    private OcrResult runSequential(BufferedImage original) {
+        int depth = 0;
+        Attempt best = null;
+        for (Strategy strategy : orderedStrategies()) {
+            depth++;
+            Attempt attempt = attempt(strategy, original);
+            if (attempt.trusted()) {
+                logger.debug("✅ {}: {} (confianza {})", strategy.name(), attempt.value(), attempt.confidence());
+                return win(attempt, depth);
+            }
+            if (attempt.valid() && (best == null || attempt.confidence() > best.confidence())) {
+                best = attempt;
+            }
+        }
+        // Ninguna lectura segura: la más confiable de las válidas
+        if (best == null) {
+            metrics.recordMiss(depth, mode);
+            return null;
+        }
+        logger.debug("✅ {} (mejor confianza, {}): {}", best.strategy(), best.confidence(), best.value());
+        return win(best, depth);
+    }
+
+    // Ejecución especulativa: como mucho maxParallelPerRequest estrategias a la vez por petición
+    private OcrResult runParallel(BufferedImage original) throws InterruptedException {
+        ExecutorCompletionService<Attempt> completion = new ExecutorCompletionService<>(executor);
+        List<Future<Attempt>> futures = new ArrayList<>();
+        Iterator<Strategy> pending = orderedStrategies().iterator();
+        int running = 0;
+
+        while (running < maxParallelPerRequest && pending.hasNext()) {
+            futures.add(submit(completion, pending.next(), original));
+            running++;
+        }
+
+        Map<Double, Integer> votes = new HashMap<>();
+        Map<Double, Double> confidenceByValue = new HashMap<>();
+        Attempt best = null;
+        int completed = 0;
+        try {
+            while (running > 0) {
+                Attempt attempt = take(completion);
+                running--;
+                completed++;
+
+                if (attempt != null && attempt.valid()) {
+                    int count = votes.merge(attempt.value(), 1, Integer::sum);
+                    double score = confidenceByValue.merge(attempt.value(), (double) attempt.confidence(), Double::sum);
+                    // Dos lecturas iguales valen por una segura
+                    if (count >= quorum && (attempt.trusted() || count > 1)) {
+                        logger.debug("✅ {} (paralelo, {} votos, confianza {}): {}",
+                                attempt.strategy(), count, attempt.confidence(), attempt.value());
+                        return win(attempt, completed);
+                    }
+                    if (best == null || score > confidenceByValue.get(best.value())) {
+                        best = attempt;
+                    }
+                }
+
+                if (pending.hasNext()) {
+                    futures.add(submit(completion, pending.next(), original));
+                    running++;
+                }
+            }
+            // Sin decisión: el valor con más confianza acumulada entre todas sus lecturas
+            if (best == null) {
+                metrics.recordMiss(completed, mode);
+                return null;
+            }
+            return win(best, completed);
+        } finally {
+            for (Future<Attempt> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private OcrResult win(Attempt attempt, int depth) {
+        strategyStats.recordWin(attempt.strategy());
+        metrics.recordWin(attempt.strategy(), depth, mode, attempt.confidence());
+        return new OcrResult(attempt.value(), attempt.strategy(), depth, attempt.confidence());
+    }
+
+    private Future<Attempt> submit(ExecutorCompletionService<Attempt> completion, Strategy strategy, BufferedImage original) {
+        return completion.submit(() -> attempt(strategy, original));
+    }
+
+    // Ejecuta una estrategia registrando su latencia y si dio una lectura segura
+    private Attempt attempt(Strategy strategy, BufferedImage original) {
+        long start = System.nanoTime();
+        Reading reading = strategy.attempt().apply(original);
+        boolean valid = usable(reading);
+        boolean trusted = valid && reading.confidence() >= acceptConfidence;
+        long nanos = System.nanoTime() - start;
+        if (cancelled()) {
+            metrics.recordAttempt(strategy.name(), "cancelled", nanos);
+        } else {
+            // Para el orden adaptativo cuenta como acierto lo que detiene la cascada
+            strategyStats.recordAttempt(strategy.name(), nanos, trusted);
+            metrics.recordAttempt(strategy.name(), trusted ? "success" : valid ? "low-confidence" : "failure", nanos);
+        }
+        return new Attempt(strategy.name(), reading.value(), reading.confidence(), valid, trusted);
+    }
+
+    private Attempt take(ExecutorCompletionService<Attempt> completion) throws InterruptedException {
+        try {
+            return completion.take().get();
+        } catch (ExecutionException | CancellationException e) {
+            logger.warn("Error en estrategia OCR paralela: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    // Las estrategias largas consultan esto entre pasos para abandonar si se canceló la petición
+    private static boolean cancelled() {
+        return Thread.currentThread().isInterrupted();
+    }
+
+    // Número válido y con confianza suficiente para tenerlo en cuenta
+    private boolean usable(Reading reading) {
+        return reading.value() != null && isValidNumber(reading.value()) && reading.confidence() >= minConfidence;
+    }
+
+    private boolean trusted(Reading reading) {
+        return usable(reading) && reading.confidence() >= acceptConfidence;
+    }
+
+    // La lectura utilizable más confiable; a igual confianza se queda la primera
+    private Reading better(Reading best, Reading candidate) {
+        if (!usable(candidate)) {
+            return best;
+        }
+        return usable(best) && best.confidence() >= candidate.confidence() ? best : candidate;
+    }
+
+    private Reading read(OcrEngineConfig config, BufferedImage image, Function<String, Double> parser)
+            throws InterruptedException {
+        OcrText text = ocrEnginePool.recognize(config, image);
+        logger.debug("PSM {}: '{}' (confianza {})", config.psm(), text.text().trim(), text.confidence());
+        return new Reading(parser.apply(text.text().trim()), text.confidence());
+    }
+
+    private Reading read(OcrSession session, int psm, Function<String, Double> parser) {
+        OcrText text = session.recognize(psm);
+        logger.debug("PSM {}: '{}' (confianza {})", psm, text.text().trim(), text.confidence());
+        return new Reading(parser.apply(text.text().trim()), text.confidence());
+    }
+
+    private record Strategy(String name, Function<BufferedImage, Reading> attempt) {
+    }
+
+    private record Reading(Double value, float confidence) {
+        static final Reading NONE = new Reading(null, 0f);
+    }
+
+    private record Attempt(String strategy, Double value, float confidence, boolean valid, boolean trusted) {
+    }
+
+        // Método básico simplificado
+    private Reading tryBasicOCR(BufferedImage original) {
+        try {
+            logger.debug("--- OCR Básico ---");
+            return read(CONFIG_BASICO, original, OcrNumberParser::extractNumberWithDecimals);
+            
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Reading.NONE;
+        } catch (Exception e) {
+            logger.warn("Error OCR básico: {}", e.getMessage());
+            return Reading.NONE;
+        }
+    }
+
+    // MÉTODO SEGURO: Sin errores de escalado
+    private Reading trySafeOCR(BufferedImage original) {
+        try {
+            logger.debug("--- OCR Seguro ---");
+            
+            // Solo procesar si la imagen es lo suficientemente grande
+            if (original.getWidth() < 10 || original.getHeight() < 10) {
+                logger.debug("Imagen demasiado pequeña para procesar");
+                return Reading.NONE;
+            }
+            
+            // Escalar de forma segura
+            BufferedImage processed = metrics.timePreprocess("safeScale", () -> ImagePreprocessor.safeScaleAndEnhance(original));
+            
+            // Configuración conservadora de Tesseract
+            return read(CONFIG_SEGURO, processed, OcrNumberParser::extractNumberWithDecimals);
+            
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Reading.NONE;
+        } catch (Exception e) {
+            logger.warn("Error OCR seguro: {}", e.getMessage());
+            return Reading.NONE;
+        }
+    }
+
+    // MÉTODO PARA DECIMALES: Específico para 0.336
+    private Reading tryDecimalOCR(BufferedImage original) {
+        try {
+            logger.debug("--- OCR Decimales ---");
+            
+            if (original.getWidth() < 10 || original.getHeight() < 10) {
+                return Reading.NONE;
+            }
+            
+            // Procesamiento específico para decimales
+            BufferedImage processed = metrics.timePreprocess("decimals", () -> ImagePreprocessor.enhanceForDecimals(original));
+            
+            // PSM 7 (una línea), 8 (una palabra) y 13 (línea cruda): se para en la primera
+            // lectura segura y si no, la de más confianza
+            Reading best = Reading.NONE;
+            try (OcrSession session = ocrEnginePool.openSession(CONFIG_DECIMALES, processed)) {
+                for (int psm : PSM_DECIMALES) {
+                    best = better(best, read(session, psm, OcrNumberParser::extractNumberWithDecimals));
+                    if (trusted(best) || cancelled()) {
+                        break;
+                    }
+                }
+            }
+            return best;
+            
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Reading.NONE;
+        } catch (Exception e) {
+            logger.warn("Error OCR decimales: {}", e.getMessage());
+            return Reading.NONE;
+        }
+    }
+
+    // MÉTODO PARA NÚMEROS LARGOS: Específico para 142976
+    private Reading tryLongNumberOCR(BufferedImage original) {
+        try {
+            logger.debug("--- OCR Números Largos ---");
+            
+            if (original.getWidth() < 20 || original.getHeight() < 10) {
+                return Reading.NONE;
+            }
+            
+            // Procesamiento específico para números largos
+            BufferedImage processed = metrics.timePreprocess("longNumbers", () -> ImagePreprocessor.enhanceForLongNumbers(original));
+            
+            // PSM 7 es mejor para líneas largas de números
+            return read(CONFIG_NUMERO_LARGO, processed, OcrNumberParser::extractLongNumber);
+            
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Reading.NONE;
+        } catch (Exception e) {
+            logger.warn("Error OCR números largos: {}", e.getMessage());
+            return Reading.NONE;
+        }
+    }
+
+        // MÉTODO MULTI-ENFOQUE: Último recurso con múltiples estrategias
+    private Reading tryMultiApproachOCR(BufferedImage original) {
+        try {
+            logger.debug("--- OCR Multi-Enfoque ---");
+            
+            if (original.getWidth() < 5 || original.getHeight() < 5) {
+                return Reading.NONE;
+            }
+            
+            // Las tres variantes salen de una sola lectura del original
+            ImagePreprocessor.Variants variants = metrics.timePreprocess("variants", () -> ImagePreprocessor.variants(original));
+            
+            // Enfoques 1-3: imagen original, invertida y con alto contraste
+            Reading best = Reading.NONE;
+            List<OcrEngineConfig> configs = List.of(CONFIG_ORIGINAL, CONFIG_INVERTIDO, CONFIG_ALTO_CONTRASTE);
+            List<BufferedImage> images = List.of(variants.normal(), variants.inverted(), variants.highContrast());
+            for (int i = 0; i < configs.size(); i++) {
+                best = better(best, read(configs.get(i), images.get(i), OcrNumberParser::extractNumberWithDecimals));
+                if (trusted(best)) {
+                    logger.debug("Multi-enfoque {} exitoso: {}", i + 1, best.value());
+                    return best;
+                }
+                if (cancelled()) {
+                    return best;
+                }
+            }
+
+            // Enfoque 4: múltiples PSM en imagen original
+            try (OcrSession session = ocrEnginePool.openSession(CONFIG_MULTI_PSM, variants.normal())) {
+                for (int psm : PSM_MULTI) {
+                    if (cancelled()) {
+                        return best;
+                    }
+                    best = better(best, read(session, psm, OcrNumberParser::extractNumberWithDecimals));
+                    if (trusted(best)) {
+                        logger.debug("Multi-enfoque 4 exitoso (PSM {}): {}", psm, best.value());
+                        return best;
+                    }
+                }
+            }
+            
+            return best;
+            
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Reading.NONE;
+        } catch (Exception e) {
+            logger.warn("Error multi-enfoque: {}", e.getMessage());
+            return Reading.NONE;
+        }
+    }
+}
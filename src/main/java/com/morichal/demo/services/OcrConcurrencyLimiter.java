@@ -0,0 +1,51 @@
+package com.morichal.demo.services;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limita cuántas llamadas a Tesseract (código nativo) se ejecutan a la vez, sumando todas
+ * las peticiones y las estrategias que cada una lance en paralelo. Lo aplica
+ * {@link OcrEnginePool} al prestar cada motor. Con hilos virtuales las peticiones de CRUD
+ * pueden ser miles; el OCR sigue acotado a unos pocos núcleos.
+ */
+public class OcrConcurrencyLimiter {
+
+    private final Semaphore permits;
+    private final int maxConcurrent;
+    private final long acquireTimeoutMillis;
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+
+    public OcrConcurrencyLimiter(int maxConcurrent, long acquireTimeoutMillis) {
+        this.maxConcurrent = maxConcurrent;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.permits = new Semaphore(maxConcurrent, true);
+    }
+
+    public void acquire() throws InterruptedException {
+        if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+            timeouts.increment();
+            throw new IllegalStateException("Demasiados reconocimientos OCR en curso, inténtelo más tarde.");
+        }
+        active.incrementAndGet();
+        acquisitions.increment();
+    }
+
+    public void release() {
+        active.decrementAndGet();
+        permits.release();
+    }
+
+    public LimiterStats getStats() {
+        return new LimiterStats(maxConcurrent, active.get(), permits.getQueueLength(),
+                acquisitions.sum(), timeouts.sum());
+    }
+
+    public record LimiterStats(int maxConcurrent, int active, int waiting, long acquisitions, long timeouts) {
+    }
+}
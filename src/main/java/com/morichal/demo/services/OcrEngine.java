@@ -0,0 +1,171 @@
+package com.morichal.demo.services;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+import com.sun.jna.Pointer;
+
+import net.sourceforge.tess4j.ITessAPI.TessBaseAPI;
+import net.sourceforge.tess4j.ITessAPI.TessOcrEngineMode;
+import net.sourceforge.tess4j.ITessAPI.TessPageIteratorLevel;
+import net.sourceforge.tess4j.ITessAPI.TessResultIterator;
+import net.sourceforge.tess4j.TessAPI;
+
+/**
+ * Motor Tesseract ya inicializado (modelo cargado). El PSM y las variables de cada
+ * {@link OcrEngineConfig} se aplican al prestarlo, sin volver a cargar el modelo.
+ * Lo usa un solo hilo a la vez: se obtiene y se devuelve a través de {@link OcrEnginePool}.
+ */
+public class OcrEngine implements AutoCloseable {
+
+    private final TessAPI api = TessAPI.INSTANCE;
+    private final TessBaseAPI handle;
+
+    // Configuración aplicada ahora mismo (null = ninguna todavía)
+    private OcrEngineConfig config;
+
+    // Buffer nativo reutilizado entre reconocimientos (Tesseract copia los píxeles en SetImage)
+    private ByteBuffer pixelBuffer;
+    private int imageWidth;
+    private int imageHeight;
+
+    // PSM de Tesseract tras la inicialización, para las configuraciones que no fijan uno
+    private final int tesseractPsm;
+    private int defaultPsm;
+
+    OcrEngine(String datapath, String language) {
+        this.handle = api.TessBaseAPICreate();
+
+        if (api.TessBaseAPIInit2(handle, datapath, language, TessOcrEngineMode.OEM_DEFAULT) != 0) {
+            api.TessBaseAPIDelete(handle);
+            throw new IllegalStateException("No se pudo inicializar Tesseract con datapath: " + datapath);
+        }
+        this.tesseractPsm = api.TessBaseAPIGetPageSegMode(handle);
+        this.defaultPsm = tesseractPsm;
+    }
+
+    public OcrEngineConfig getConfig() {
+        return config;
+    }
+
+    // Fija el PSM y las variables de la configuración; solo toca lo que cambia respecto a la actual
+    void configure(OcrEngineConfig next) {
+        if (next.equals(config)) {
+            return;
+        }
+        OcrEngineConfig previous = config;
+        if (previous == null || !Objects.equals(previous.whitelist(), next.whitelist())) {
+            api.TessBaseAPISetVariable(handle, "tessedit_char_whitelist", next.whitelist() == null ? "" : next.whitelist());
+        }
+        if (previous == null || previous.numericMode() != next.numericMode()) {
+            api.TessBaseAPISetVariable(handle, "classify_bln_numeric_mode", next.numericMode() ? "1" : "0");
+        }
+        if (previous == null || previous.dpi() != next.dpi()) {
+            api.TessBaseAPISetVariable(handle, "user_defined_dpi", String.valueOf(Math.max(0, next.dpi())));
+        }
+        defaultPsm = next.psm() >= 0 ? next.psm() : tesseractPsm;
+        api.TessBaseAPISetPageSegMode(handle, defaultPsm);
+        config = next;
+    }
+
+    public OcrText recognize(BufferedImage image) {
+        setImage(image);
+        try {
+            return recognizeImage(config.psm(), null);
+        } finally {
+            clearImage();
+        }
+    }
+
+    // Copia la imagen a memoria nativa; queda fijada para varios reconocimientos hasta clearImage()
+    void setImage(BufferedImage image) {
+        // Tesseract recibe 1 byte por píxel con stride = ancho
+        BufferedImage gray = ImagePreprocessor.toGray(image);
+        imageWidth = gray.getWidth();
+        imageHeight = gray.getHeight();
+        byte[] pixels = ((DataBufferByte) gray.getRaster().getDataBuffer()).getData();
+
+        if (pixelBuffer == null || pixelBuffer.capacity() < pixels.length) {
+            pixelBuffer = ByteBuffer.allocateDirect(pixels.length);
+        }
+        pixelBuffer.clear();
+        pixelBuffer.put(pixels, 0, imageWidth * imageHeight).flip();
+
+        api.TessBaseAPISetImage(handle, pixelBuffer, imageWidth, imageHeight, 1, imageWidth);
+    }
+
+    /**
+     * Reconoce la imagen fijada con el PSM indicado (negativo = el del motor) y, si se da,
+     * solo dentro de {@code area}. SetRectangle descarta el resultado anterior, así que
+     * cada llamada vuelve a reconocer sin volver a copiar la imagen.
+     */
+    OcrText recognizeImage(int psm, Rectangle area) {
+        api.TessBaseAPISetPageSegMode(handle, psm >= 0 ? psm : defaultPsm);
+        if (area != null) {
+            api.TessBaseAPISetRectangle(handle, area.x, area.y, area.width, area.height);
+        } else {
+            api.TessBaseAPISetRectangle(handle, 0, 0, imageWidth, imageHeight);
+        }
+
+        Pointer text = api.TessBaseAPIGetUTF8Text(handle);
+        try {
+            // El reconocimiento ya está hecho: leer las confianzas no repite el OCR
+            return new OcrText(text == null ? "" : text.getString(0, "UTF-8"), digitConfidence());
+        } finally {
+            if (text != null) {
+                api.TessDeleteText(text);
+            }
+        }
+    }
+
+    // Libera la imagen y deja el motor con su PSM de configuración para el siguiente uso del pool
+    void clearImage() {
+        api.TessBaseAPIClear(handle);
+        api.TessBaseAPISetPageSegMode(handle, defaultPsm);
+    }
+
+    // Confianza de la palabra con dígitos menos segura: basta un dígito dudoso para dudar del número
+    private float digitConfidence() {
+        TessResultIterator iterator = api.TessBaseAPIGetIterator(handle);
+        if (iterator == null) {
+            return 0f;
+        }
+        float min = Float.MAX_VALUE;
+        try {
+            do {
+                Pointer word = api.TessResultIteratorGetUTF8Text(iterator, TessPageIteratorLevel.RIL_WORD);
+                if (word == null) {
+                    continue;
+                }
+                try {
+                    if (containsDigit(word.getString(0, "UTF-8"))) {
+                        min = Math.min(min, api.TessResultIteratorConfidence(iterator, TessPageIteratorLevel.RIL_WORD));
+                    }
+                } finally {
+                    api.TessDeleteText(word);
+                }
+            } while (api.TessResultIteratorNext(iterator, TessPageIteratorLevel.RIL_WORD) != 0);
+        } finally {
+            api.TessResultIteratorDelete(iterator);
+        }
+        return min == Float.MAX_VALUE ? 0f : min;
+    }
+
+    private static boolean containsDigit(String word) {
+        for (int i = 0; i < word.length(); i++) {
+            if (Character.isDigit(word.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void close() {
+        api.TessBaseAPIEnd(handle);
+        api.TessBaseAPIDelete(handle);
+    }
+}
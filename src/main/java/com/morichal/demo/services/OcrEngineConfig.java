@@ -0,0 +1,32 @@
+package com.morichal.demo.services;
+
+/**
+ * Configuración con la que se inicializa un motor Tesseract del pool.
+ * Dos estrategias que piden la misma configuración comparten motores.
+ *
+ * @param psm         modo de segmentación de página (-1 = el de Tesseract por defecto)
+ * @param whitelist   caracteres permitidos (null = sin restricción)
+ * @param numericMode valor de classify_bln_numeric_mode
+ * @param dpi         user_defined_dpi (0 = no se fija)
+ */
+public record OcrEngineConfig(int psm, String whitelist, boolean numericMode, int dpi) {
+
+    public static final String DIGITOS_Y_DECIMALES = "0123456789.,";
+    public static final String SOLO_DIGITOS = "0123456789";
+
+    public static OcrEngineConfig of(int psm, String whitelist) {
+        return new OcrEngineConfig(psm, whitelist, false, 0);
+    }
+
+    public static OcrEngineConfig numeric(int psm, String whitelist) {
+        return new OcrEngineConfig(psm, whitelist, true, 0);
+    }
+
+    public OcrEngineConfig withDpi(int dpi) {
+        return new OcrEngineConfig(psm, whitelist, numericMode, dpi);
+    }
+
+    public OcrEngineConfig withPsm(int psm) {
+        return new OcrEngineConfig(psm, whitelist, numericMode, dpi);
+    }
+}
@@ -0,0 +1,214 @@
+package com.morichal.demo.services;
+
+import java.awt.image.BufferedImage;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pool acotado de motores Tesseract inicializados para un datapath e idioma. Como mucho
+ * {@code maxEngines} motores existen y están en uso a la vez. Cualquier motor sirve para
+ * cualquier {@link OcrEngineConfig}: el PSM y las variables se aplican al prestarlo, así que
+ * el modelo se carga una sola vez por motor aunque la cascada use más configuraciones
+ * que motores tiene el pool.
+ */
+public class OcrEnginePool implements AutoCloseable {
+
+    private final String datapath;
+    private final String language;
+    private final int maxEngines;
+    private final long acquireTimeoutMillis;
+
+    private final Semaphore permits;
+    private final Deque<OcrEngine> idle = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger liveEngines = new AtomicInteger();
+
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final LongAdder enginesCreated = new LongAdder();
+
+    private OcrMetrics metrics = OcrMetrics.noop();
+    private OcrConcurrencyLimiter limiter;
+
+    public OcrEnginePool(String datapath, String language, int maxEngines, long acquireTimeoutMillis) {
+        this.datapath = datapath;
+        this.language = language;
+        this.maxEngines = Math.max(1, maxEngines);
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.permits = new Semaphore(this.maxEngines, true);
+    }
+
+    public void setMetrics(OcrMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    // Cada motor prestado ocupa un permiso del limitador mientras hace trabajo nativo, también
+    // los que lanzan en paralelo las estrategias de una misma petición
+    public void setConcurrencyLimiter(OcrConcurrencyLimiter limiter) {
+        this.limiter = limiter;
+    }
+
+    // Llena el pool (repartiendo las configuraciones) para no pagar la carga en la primera petición
+    public void warmUp(Collection<OcrEngineConfig> configs) {
+        List<OcrEngineConfig> list = List.copyOf(configs);
+        for (int i = 0; liveEngines.get() < maxEngines; i++) {
+            OcrEngine engine = create();
+            if (!list.isEmpty()) {
+                engine.configure(list.get(i % list.size()));
+            }
+            idle.offerLast(engine);
+        }
+    }
+
+    public OcrEngine acquire(OcrEngineConfig config) throws InterruptedException {
+        if (limiter != null) {
+            limiter.acquire();
+        }
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new IllegalStateException("No hay motores OCR disponibles (espera de " + acquireTimeoutMillis + " ms agotada)");
+            }
+        } catch (InterruptedException | RuntimeException e) {
+            releaseLimiter();
+            throw e;
+        }
+        recordWait(System.nanoTime() - start);
+
+        OcrEngine engine = null;
+        try {
+            // Con el permiso concedido hay un motor ocioso o sitio para crear otro
+            engine = takeIdle(config);
+            if (engine == null) {
+                engine = create();
+            }
+            engine.configure(config);
+            return engine;
+        } catch (RuntimeException e) {
+            if (engine != null) {
+                destroy(engine);
+            }
+            permits.release();
+            releaseLimiter();
+            throw e;
+        }
+    }
+
+    public void release(OcrEngine engine) {
+        try {
+            idle.offerFirst(engine);
+        } finally {
+            permits.release();
+            releaseLimiter();
+        }
+    }
+
+    private void releaseLimiter() {
+        if (limiter != null) {
+            limiter.release();
+        }
+    }
+
+    public OcrText recognize(OcrEngineConfig config, BufferedImage image) throws InterruptedException {
+        OcrEngine engine = acquire(config);
+        long start = System.nanoTime();
+        try {
+            return engine.recognize(image);
+        } finally {
+            metrics.recordTesseract(config, System.nanoTime() - start);
+            release(engine);
+        }
+    }
+
+    /**
+     * Reserva un motor y le fija la imagen una vez para varios reconocimientos
+     * (PSM o zonas distintas). Hay que cerrar la sesión para devolver el motor.
+     */
+    public OcrSession openSession(OcrEngineConfig config, BufferedImage image) throws InterruptedException {
+        OcrEngine engine = acquire(config);
+        try {
+            engine.setImage(image);
+        } catch (RuntimeException e) {
+            release(engine);
+            throw e;
+        }
+        return new OcrSession(this, engine, metrics);
+    }
+
+    public PoolStats getStats() {
+        long count = acquisitions.sum();
+        int idleCount = idle.size();
+        return new PoolStats(
+                maxEngines,
+                liveEngines.get(),
+                idleCount,
+                maxEngines - permits.availablePermits(),
+                permits.getQueueLength(),
+                enginesCreated.sum(),
+                count,
+                count == 0 ? 0.0 : totalWaitNanos.sum() / 1_000_000.0 / count,
+                maxWaitNanos.get() / 1_000_000.0);
+    }
+
+    public int getMaxEngines() {
+        return maxEngines;
+    }
+
+    // Mejor un motor que ya tenga esa configuración (no hay que tocar sus variables); si no, el más reciente
+    private OcrEngine takeIdle(OcrEngineConfig config) {
+        for (Iterator<OcrEngine> it = idle.iterator(); it.hasNext();) {
+            OcrEngine engine = it.next();
+            if (config.equals(engine.getConfig()) && idle.removeFirstOccurrence(engine)) {
+                return engine;
+            }
+        }
+        return idle.pollFirst();
+    }
+
+    private OcrEngine create() {
+        OcrEngine engine = new OcrEngine(datapath, language);
+        liveEngines.incrementAndGet();
+        enginesCreated.increment();
+        return engine;
+    }
+
+    private void destroy(OcrEngine engine) {
+        liveEngines.decrementAndGet();
+        engine.close();
+    }
+
+    private void recordWait(long nanos) {
+        metrics.recordPoolWait(nanos);
+        acquisitions.increment();
+        totalWaitNanos.add(nanos);
+        maxWaitNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    @Override
+    public void close() {
+        OcrEngine engine;
+        while ((engine = idle.pollFirst()) != null) {
+            destroy(engine);
+        }
+    }
+
+    public record PoolStats(
+            int maxEngines,
+            int liveEngines,
+            int idleEngines,
+            int inUse,
+            int waitingThreads,
+            long enginesCreated,
+            long acquisitions,
+            double meanWaitMillis,
+            double maxWaitMillis) {
+    }
+}
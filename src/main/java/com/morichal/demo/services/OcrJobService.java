@@ -0,0 +1,215 @@
+package com.morichal.demo.services;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.morichal.demo.models.DisplayRegion;
+import com.morichal.demo.models.OcrResult;
+import com.morichal.demo.models.imageResponse;
+
+/**
+ * Trabajos OCR asíncronos: la petición solo deja la imagen en una cola acotada y
+ * devuelve un id; un número fijo de hilos la procesa. El resultado se consulta por id
+ * o se recibe por SSE. Con la cola llena se rechaza en lugar de acumular trabajo.
+ */
+@Service
+public class OcrJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OcrJobService.class);
+
+    @Autowired
+    private OCRService ocrService;
+
+    @Autowired
+    @Qualifier("ocrJobExecutor")
+    private ThreadPoolExecutor ocrJobExecutor;
+
+    @Value("${ocr.jobs.retention-minutes:15}")
+    private long retentionMinutes = 15;
+
+    @Value("${ocr.jobs.sse-timeout-ms:120000}")
+    private long sseTimeoutMillis = 120000;
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+    // Duración media de los trabajos terminados, para estimar el Retry-After
+    private final AtomicLong completedJobs = new AtomicLong();
+    private final AtomicLong totalJobNanos = new AtomicLong();
+
+    public enum Status { QUEUED, RUNNING, DONE, FAILED }
+
+    /** Estado de un trabajo tal como se devuelve al cliente. */
+    public record JobView(String id, Status status, String filename, Double number, Long recordId,
+            String strategy, Float confidence, DisplayRegion region, String error, long createdAt, Long finishedAt) {
+    }
+
+    public JobView submit(byte[] content, String contentType, String filename) {
+        // Un tipo no válido se rechaza ya, sin ocupar un hueco en la cola
+        if (!ocrService.isValidImageType(contentType)) {
+            throw new IllegalArgumentException("Invalid file type. Only JPEG, JPG, and PNG are allowed.");
+        }
+        Job job = new Job(UUID.randomUUID().toString(), content, contentType, filename);
+        jobs.put(job.id, job);
+        try {
+            ocrJobExecutor.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            throw new OcrQueueFullException(retryAfterSeconds());
+        }
+        return job.view();
+    }
+
+    public JobView find(String id) {
+        Job job = jobs.get(id);
+        return job == null ? null : job.view();
+    }
+
+    /** Emisor SSE que recibe cada cambio de estado y se cierra al terminar el trabajo. */
+    public SseEmitter subscribe(String id) {
+        Job job = jobs.get(id);
+        if (job == null) {
+            return null;
+        }
+        SseEmitter emitter = new SseEmitter(sseTimeoutMillis);
+        emitter.onCompletion(() -> job.removeListener(emitter));
+        emitter.onTimeout(() -> job.removeListener(emitter));
+        job.addListener(emitter);
+        return emitter;
+    }
+
+    private void run(Job job) {
+        long start = System.nanoTime();
+        job.update(Status.RUNNING, null, null, null);
+        try {
+            OcrResult result = ocrService.extractFromBytes(job.content, job.contentType, job.filename);
+            imageResponse saved = ocrService.guardar(new imageResponse(result.value()));
+            job.update(Status.DONE, result, saved.getId(), null);
+        } catch (IllegalArgumentException e) {
+            job.update(Status.FAILED, null, null, e.getMessage());
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Error inesperado en el trabajo OCR {}: {}", job.id, e.getMessage());
+            job.update(Status.FAILED, null, null, "Error al procesar la imagen.");
+        } finally {
+            completedJobs.incrementAndGet();
+            totalJobNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    // Tiempo aproximado hasta que se libere un hueco: cola actual por duración media entre hilos
+    private long retryAfterSeconds() {
+        long done = completedJobs.get();
+        double meanSeconds = done == 0 ? 1.0 : totalJobNanos.get() / 1e9 / done;
+        int workers = Math.max(1, ocrJobExecutor.getMaximumPoolSize());
+        long estimate = (long) Math.ceil(ocrJobExecutor.getQueue().size() * meanSeconds / workers);
+        return Math.min(60, Math.max(1, estimate));
+    }
+
+    // Los trabajos terminados se conservan un tiempo para poder consultarlos
+    @Scheduled(fixedDelayString = "${ocr.jobs.cleanup-interval-ms:60000}")
+    public void purgeFinished() {
+        long limit = System.currentTimeMillis() - retentionMinutes * 60_000;
+        jobs.values().removeIf(job -> job.finishedAt != null && job.finishedAt < limit);
+    }
+
+    private static class Job {
+        private final String id;
+        private final String contentType;
+        private final String filename;
+        private final long createdAt = System.currentTimeMillis();
+        private final List<SseEmitter> listeners = new ArrayList<>();
+
+        // La imagen solo se necesita hasta procesarla
+        private byte[] content;
+        private Status status = Status.QUEUED;
+        private OcrResult result;
+        private Long recordId;
+        private String error;
+        private volatile Long finishedAt;
+
+        Job(String id, byte[] content, String contentType, String filename) {
+            this.id = id;
+            this.content = content;
+            this.contentType = contentType;
+            this.filename = filename;
+        }
+
+        synchronized JobView view() {
+            return new JobView(id, status, filename,
+                    result == null ? null : result.value(), recordId,
+                    result == null ? null : result.strategy(),
+                    result == null ? null : result.confidence(),
+                    result == null ? null : result.region(),
+                    error, createdAt, finishedAt);
+        }
+
+        void update(Status newStatus, OcrResult newResult, Long newRecordId, String newError) {
+            List<SseEmitter> targets;
+            JobView view;
+            boolean finished = newStatus == Status.DONE || newStatus == Status.FAILED;
+            synchronized (this) {
+                status = newStatus;
+                result = newResult;
+                recordId = newRecordId;
+                error = newError;
+                if (finished) {
+                    finishedAt = System.currentTimeMillis();
+                    content = null;
+                }
+                view = view();
+                targets = new ArrayList<>(listeners);
+                if (finished) {
+                    listeners.clear();
+                }
+            }
+            for (SseEmitter emitter : targets) {
+                send(emitter, view, finished);
+            }
+        }
+
+        void addListener(SseEmitter emitter) {
+            JobView view;
+            boolean finished;
+            synchronized (this) {
+                view = view();
+                finished = finishedAt != null;
+                if (!finished) {
+                    listeners.add(emitter);
+                }
+            }
+            // Estado actual al suscribirse; si ya terminó, se envía y se cierra
+            send(emitter, view, finished);
+        }
+
+        synchronized void removeListener(SseEmitter emitter) {
+            listeners.remove(emitter);
+        }
+
+        private static void send(SseEmitter emitter, JobView view, boolean complete) {
+            try {
+                emitter.send(SseEmitter.event().name(view.status().name().toLowerCase()).data(view));
+                if (complete) {
+                    emitter.complete();
+                }
+            } catch (IOException | IllegalStateException e) {
+                // Cliente desconectado
+                emitter.completeWithError(e);
+            }
+        }
+    }
+}
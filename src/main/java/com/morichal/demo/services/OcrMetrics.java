@@ -0,0 +1,97 @@
+package com.morichal.demo.services;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Métricas del proceso OCR (Micrometer): tiempos de cada etapa, resultados de cada
+ * estrategia y llamadas en curso. Los histogramas se activan por configuración
+ * ({@code management.metrics.distribution.percentiles-histogram.ocr}).
+ */
+public class OcrMetrics {
+
+    private final MeterRegistry registry;
+    private final Counter misses;
+
+    public OcrMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.misses = Counter.builder("ocr.cascade.misses")
+                .description("Imágenes en las que ninguna estrategia dio un número válido")
+                .register(registry);
+    }
+
+    // Sin registro real: para herramientas y benchmarks que montan la cascada a mano
+    public static OcrMetrics noop() {
+        return new OcrMetrics(new SimpleMeterRegistry());
+    }
+
+    public void recordDecode(long nanos) {
+        registry.timer("ocr.decode").record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordRegion(long nanos, boolean found) {
+        registry.timer("ocr.roi", "found", String.valueOf(found)).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public <T> T timePreprocess(String variant, Supplier<T> work) {
+        return registry.timer("ocr.preprocess", "variant", variant).record(work);
+    }
+
+    // Una llamada al motor (SetImage + reconocimiento), sin la espera del pool
+    public void recordTesseract(OcrEngineConfig config, long nanos) {
+        registry.timer("ocr.tesseract", "psm", String.valueOf(config.psm()), "numeric", String.valueOf(config.numericMode()))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordPoolWait(long nanos) {
+        registry.timer("ocr.pool.wait").record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    // outcome: success, failure o cancelled (abandonada en modo paralelo)
+    public void recordAttempt(String strategy, String outcome, long nanos) {
+        registry.timer("ocr.strategy", "strategy", strategy, "outcome", outcome).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordWin(String strategy, int depth, OcrCascade.Mode mode, float confidence) {
+        registry.counter("ocr.cascade.wins", "strategy", strategy).increment();
+        depth(mode).record(depth);
+        DistributionSummary.builder("ocr.cascade.confidence")
+                .description("Confianza de Tesseract en la lectura aceptada (0-100)")
+                .tag("strategy", strategy)
+                .register(registry)
+                .record(confidence);
+    }
+
+    public void recordMiss(int depth, OcrCascade.Mode mode) {
+        misses.increment();
+        depth(mode).record(depth);
+    }
+
+    public void bindLimiter(OcrConcurrencyLimiter limiter) {
+        Gauge.builder("ocr.active", limiter, l -> l.getStats().active())
+                .description("Reconocimientos OCR en curso")
+                .register(registry);
+        Gauge.builder("ocr.waiting", limiter, l -> l.getStats().waiting())
+                .description("Peticiones esperando turno para el OCR")
+                .register(registry);
+    }
+
+    public void bindPool(OcrEnginePool pool) {
+        Gauge.builder("ocr.pool.engines", pool, p -> p.getStats().liveEngines()).register(registry);
+        Gauge.builder("ocr.pool.in-use", pool, p -> p.getStats().inUse()).register(registry);
+    }
+
+    private DistributionSummary depth(OcrCascade.Mode mode) {
+        return DistributionSummary.builder("ocr.cascade.depth")
+                .description("Estrategias ejecutadas hasta decidir")
+                .tag("mode", mode.name().toLowerCase())
+                .register(registry);
+    }
+}
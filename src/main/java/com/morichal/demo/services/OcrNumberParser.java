@@ -0,0 +1,115 @@
+package com.morichal.demo.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Conversión del texto que devuelve Tesseract a número. Sin estado, separado de la
+ * cascada para poder medirlo y reutilizarlo sin montar motores.
+ */
+final class OcrNumberParser {
+
+    private static final Logger logger = LoggerFactory.getLogger(OcrNumberParser.class);
+
+    private OcrNumberParser() {
+    }
+
+    // EXTRACCIÓN MEJORADA DE NÚMEROS
+    static Double extractNumberWithDecimals(String text) {
+        if (text == null || text.trim().isEmpty()) {
+            return null;
+        }
+
+        logger.debug("Extrayendo con decimales de: '{}'", text);
+
+        // Preservar puntos decimales
+        String cleanText = text.replaceAll("[^0-9.,]", "");
+
+        if (cleanText.isEmpty()) {
+            return null;
+        }
+
+        // Reemplazar comas por puntos
+        cleanText = cleanText.replace(",", ".");
+
+        // Si hay múltiples puntos, mantener solo el que parece decimal
+        if (cleanText.indexOf('.') != cleanText.lastIndexOf('.')) {
+            // Buscar el punto que tiene 1-3 dígitos después
+            String[] parts = cleanText.split("\\.");
+            if (parts.length == 0) {
+                // Solo puntos (p. ej. ".."): no hay ningún dígito
+                return null;
+            }
+            StringBuilder result = new StringBuilder();
+
+            for (int i = 0; i < parts.length - 1; i++) {
+                result.append(parts[i]);
+            }
+
+            // Agregar el último punto y parte decimal
+            if (parts[parts.length - 1].length() <= 3) {
+                result.append(".").append(parts[parts.length - 1]);
+            } else {
+                result.append(parts[parts.length - 1]);
+            }
+
+            cleanText = result.toString();
+        }
+
+        try {
+            Double result = Double.parseDouble(cleanText);
+            logger.debug("Número con decimales extraído: {}", result);
+            return result;
+        } catch (NumberFormatException e) {
+            logger.debug("Error parseando: {}", cleanText);
+            return null;
+        }
+    }
+
+    static Double extractLongNumber(String text) {
+        if (text == null || text.trim().isEmpty()) {
+            return null;
+        }
+
+        logger.debug("Extrayendo número largo de: '{}'", text);
+
+        // Para números largos, solo extraer dígitos consecutivos
+        String cleanText = text.replaceAll("[^0-9]", "");
+
+        if (cleanText.isEmpty()) {
+            return null;
+        }
+
+        try {
+            // Si el número es muy largo, podría ser un error
+            if (cleanText.length() > 8) {
+                logger.debug("Número muy largo, posible error: {}", cleanText);
+                return null;
+            }
+
+            Double result = Double.parseDouble(cleanText);
+            logger.debug("Número largo extraído: {}", result);
+            return result;
+        } catch (NumberFormatException e) {
+            logger.debug("Error parseando número largo: {}", cleanText);
+            return null;
+        }
+    }
+
+    // VALIDACIÓN MEJORADA
+    static boolean isValidNumber(Double number) {
+        if (number == null) return false;
+
+        // Rango amplio pero lógico
+        boolean valid = (number >= 0 && number <= 1000000); // Hasta 1 millón
+
+        // Log mejorado
+        if (valid) {
+            logger.debug("✅ Número válido: {}", number);
+        } else {
+            logger.debug("❌ Número inválido: {} (fuera de rango 0-1,000,000)", number);
+        }
+
+        return valid;
+    }
+}
@@ -0,0 +1,91 @@
+package com.morichal.demo.services;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.morichal.demo.models.DisplayRegion;
+import com.morichal.demo.models.OcrResult;
+
+/**
+ * Reconocimiento completo de una imagen: decodificación, recorte a la pantalla y cascada
+ * de estrategias (con reintento sobre la imagen completa). El turno en el limitador lo
+ * toma cada llamada a Tesseract, en {@link OcrEnginePool}. No valida ni cachea; eso lo
+ * hace {@link OCRService}.
+ */
+public class OcrPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(OcrPipeline.class);
+
+    private final ImageDecoder imageDecoder;
+    private final DisplayRegionDetector displayRegionDetector;
+    private final OcrCascade ocrCascade;
+    private final OcrMetrics ocrMetrics;
+
+    private boolean roiEnabled = true;
+    private boolean roiFallbackFullFrame = true;
+
+    public OcrPipeline(ImageDecoder imageDecoder, DisplayRegionDetector displayRegionDetector, OcrCascade ocrCascade,
+            OcrMetrics ocrMetrics) {
+        this.imageDecoder = imageDecoder;
+        this.displayRegionDetector = displayRegionDetector;
+        this.ocrCascade = ocrCascade;
+        this.ocrMetrics = ocrMetrics;
+    }
+
+    public void setRegionOfInterest(boolean enabled, boolean fallbackFullFrame) {
+        this.roiEnabled = enabled;
+        this.roiFallbackFullFrame = fallbackFullFrame;
+    }
+
+    /** Número reconocido en la imagen, o null si ninguna estrategia dio uno válido. */
+    public OcrResult recognize(byte[] content) throws IOException {
+        // Se decodifica una sola vez (submuestreada si es muy grande) y todas las estrategias
+        // comparten el mismo raster; ninguna toca el disco
+        long start = System.nanoTime();
+        ImageDecoder.Decoded decoded = imageDecoder.decode(content);
+        ocrMetrics.recordDecode(System.nanoTime() - start);
+        if (decoded == null || decoded.image() == null) {
+            throw new IllegalArgumentException("No se pudo decodificar la imagen.");
+        }
+        return recognize(decoded);
+    }
+
+    /** Igual, sobre una imagen ya decodificada (p. ej. durante la ingesta en streaming). */
+    public OcrResult recognize(ImageDecoder.Decoded decoded) {
+        if (decoded.subsampling() > 1) {
+            logger.debug("Imagen de {}x{} decodificada a 1/{}", decoded.sourceWidth(), decoded.sourceHeight(), decoded.subsampling());
+        }
+
+        try {
+            return recognizeDisplay(decoded);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Procesamiento OCR interrumpido.");
+        }
+    }
+
+    private OcrResult recognizeDisplay(ImageDecoder.Decoded decoded) throws InterruptedException {
+        BufferedImage original = decoded.image();
+        // Recorte a la pantalla: las estrategias escalan y reconocen solo esa zona
+        DisplayRegion region = null;
+        if (roiEnabled) {
+            long start = System.nanoTime();
+            region = displayRegionDetector.detect(original);
+            ocrMetrics.recordRegion(System.nanoTime() - start, region != null);
+        }
+        if (region != null) {
+            logger.debug("Zona de dígitos: {}", region);
+            BufferedImage display = original.getSubimage(region.x(), region.y(), region.width(), region.height());
+            OcrResult result = ocrCascade.run(display);
+            if (result != null || !roiFallbackFullFrame) {
+                // La zona se devuelve en píxeles de la imagen subida, no del raster submuestreado
+                return result == null ? null : result.withRegion(decoded.toSource(region));
+            }
+            logger.debug("Sin resultado en la zona detectada, se reintenta con la imagen completa");
+        }
+        return ocrCascade.run(original);
+    }
+}
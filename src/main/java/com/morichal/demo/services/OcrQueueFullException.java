@@ -0,0 +1,19 @@
+package com.morichal.demo.services;
+
+/**
+ * La cola de trabajos OCR está llena; el cliente debe reintentar pasados
+ * {@link #getRetryAfterSeconds()} segundos.
+ */
+public class OcrQueueFullException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public OcrQueueFullException(long retryAfterSeconds) {
+        super("Cola de OCR llena, reintente en " + retryAfterSeconds + " s.");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
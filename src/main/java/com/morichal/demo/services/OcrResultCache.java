@@ -0,0 +1,167 @@
+package com.morichal.demo.services;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.morichal.demo.models.OcrResult;
+
+/**
+ * Caché de resultados OCR por hash (SHA-256) de los bytes subidos, con límite de
+ * tamaño (LRU) y caducidad. Las peticiones simultáneas con el mismo hash comparten
+ * un único cálculo. Solo se guardan resultados válidos, nunca errores.
+ */
+@Component
+public class OcrResultCache {
+
+    @Value("${ocr.cache.max-entries:1000}")
+    private int maxEntries = 1000;
+
+    @Value("${ocr.cache.ttl-minutes:60}")
+    private long ttlMinutes = 60;
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, CompletableFuture<OcrResult>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder sharedComputations = new LongAdder();
+
+    @FunctionalInterface
+    public interface Loader {
+        OcrResult load() throws IOException;
+    }
+
+    public static String hash(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    public OcrResult getOrCompute(String hash, Loader loader) throws IOException {
+        OcrResult cached = get(hash);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+
+        CompletableFuture<OcrResult> mine = new CompletableFuture<>();
+        CompletableFuture<OcrResult> running = inFlight.putIfAbsent(hash, mine);
+        if (running != null) {
+            // Otra petición ya está procesando la misma imagen: esperar su resultado
+            sharedComputations.increment();
+            return await(running);
+        }
+
+        try {
+            // Puede haberse completado otro cálculo entre la consulta y el registro
+            OcrResult result = get(hash);
+            if (result != null) {
+                hits.increment();
+                mine.complete(result);
+                return result;
+            }
+            misses.increment();
+            result = loader.load();
+            if (result != null) {
+                put(hash, result);
+            }
+            mine.complete(result);
+            return result;
+        } catch (IOException | RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(hash, mine);
+        }
+    }
+
+    public CacheStats getStats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        long h = hits.sum();
+        long m = misses.sum();
+        return new CacheStats(size, maxEntries, ttlMinutes, h, m, sharedComputations.sum(), evictions.sum(),
+                h + m == 0 ? 0.0 : (double) h / (h + m));
+    }
+
+    private OcrResult get(String hash) {
+        synchronized (entries) {
+            Entry entry = entries.get(hash);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAt() < System.currentTimeMillis()) {
+                entries.remove(hash);
+                evictions.increment();
+                return null;
+            }
+            return entry.result();
+        }
+    }
+
+    private void put(String hash, OcrResult result) {
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            entries.put(hash, new Entry(result, now + ttlMinutes * 60_000));
+            Iterator<Entry> iterator = entries.values().iterator();
+            // Se descartan los menos usados recientemente hasta respetar el límite
+            while (entries.size() > maxEntries && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    private static OcrResult await(CompletableFuture<OcrResult> running) throws IOException {
+        try {
+            return running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Procesamiento OCR interrumpido.");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private record Entry(OcrResult result, long expiresAt) {
+    }
+
+    public record CacheStats(
+            int size,
+            int maxEntries,
+            long ttlMinutes,
+            long hits,
+            long misses,
+            long sharedComputations,
+            long evictions,
+            double hitRatio) {
+    }
+}
@@ -0,0 +1,43 @@
+package com.morichal.demo.services;
+
+import java.awt.Rectangle;
+
+/**
+ * Imagen fijada una sola vez en un motor del pool para reconocerla varias veces con
+ * distintos PSM o zonas. El motor queda reservado hasta {@link #close()}.
+ */
+public class OcrSession implements AutoCloseable {
+
+    private final OcrEnginePool pool;
+    private final OcrEngine engine;
+    private final OcrMetrics metrics;
+
+    OcrSession(OcrEnginePool pool, OcrEngine engine, OcrMetrics metrics) {
+        this.pool = pool;
+        this.engine = engine;
+        this.metrics = metrics;
+    }
+
+    public OcrText recognize(int psm) {
+        return recognize(psm, null);
+    }
+
+    // area en píxeles de la imagen fijada (null = imagen completa)
+    public OcrText recognize(int psm, Rectangle area) {
+        long start = System.nanoTime();
+        try {
+            return engine.recognizeImage(psm, area);
+        } finally {
+            metrics.recordTesseract(engine.getConfig().withPsm(psm), System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            engine.clearImage();
+        } finally {
+            pool.release(engine);
+        }
+    }
+}
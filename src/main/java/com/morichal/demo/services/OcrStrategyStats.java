@@ -0,0 +1,247 @@
+package com.morichal.demo.services;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Estadísticas en vivo de cada estrategia OCR (aciertos, victorias y latencia) usadas
+ * para reordenar la cascada. Se guardan periódicamente en un fichero para sobrevivir
+ * a los reinicios.
+ */
+@Component
+public class OcrStrategyStats {
+
+    private static final Logger logger = LoggerFactory.getLogger(OcrStrategyStats.class);
+
+    private static final int LATENCY_SAMPLES = 256;
+
+    @Value("${ocr.cascade.adaptive.min-samples:20}")
+    private int minSamples = 20;
+
+    @Value("${ocr.stats.snapshot-file:}")
+    private String snapshotFile = "";
+
+    private final Map<String, StrategyCounters> counters = new ConcurrentHashMap<>();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public void recordAttempt(String strategy, long nanos, boolean success) {
+        countersFor(strategy).record(nanos, success);
+    }
+
+    public void recordWin(String strategy) {
+        countersFor(strategy).wins.incrementAndGet();
+    }
+
+    /**
+     * Devuelve los nombres ordenados por éxitos esperados por milisegundo. Cada estrategia
+     * cuenta por separado: con menos de {@code minSamples} intentos su puntuación se mezcla
+     * con la media de las que ya tienen muestras suficientes, en proporción a los intentos
+     * que lleva. Mientras ninguna las tenga se respeta el orden recibido.
+     */
+    public List<String> order(List<String> defaultOrder) {
+        double prior = prior(defaultOrder);
+        if (Double.isNaN(prior)) {
+            return defaultOrder;
+        }
+        Map<String, Double> scores = new LinkedHashMap<>();
+        for (String name : defaultOrder) {
+            StrategyCounters c = countersFor(name);
+            double weight = Math.min(1.0, (double) c.attempts.get() / Math.max(1, minSamples));
+            scores.put(name, weight * c.score() + (1.0 - weight) * prior);
+        }
+        List<String> ordered = new ArrayList<>(defaultOrder);
+        // sort es estable: a igual puntuación se mantiene el orden por defecto
+        ordered.sort(Comparator.comparingDouble((String name) -> scores.get(name)).reversed());
+        return ordered;
+    }
+
+    // Puntuación media de las estrategias con muestras suficientes; NaN si no hay ninguna
+    private double prior(List<String> defaultOrder) {
+        double sum = 0.0;
+        int ready = 0;
+        for (String name : defaultOrder) {
+            StrategyCounters c = countersFor(name);
+            if (c.attempts.get() >= minSamples) {
+                sum += c.score();
+                ready++;
+            }
+        }
+        return ready == 0 ? Double.NaN : sum / ready;
+    }
+
+    public List<StrategySnapshot> snapshot(List<String> defaultOrder) {
+        List<StrategySnapshot> result = new ArrayList<>();
+        for (String name : order(defaultOrder)) {
+            result.add(countersFor(name).snapshot(name));
+        }
+        return result;
+    }
+
+    // Orden actual y estadísticas, para el endpoint de estadísticas
+    public Map<String, Object> describe(List<String> defaultOrder) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("order", order(defaultOrder));
+        result.put("minSamples", minSamples);
+        result.put("strategies", snapshot(defaultOrder));
+        return result;
+    }
+
+    private StrategyCounters countersFor(String strategy) {
+        return counters.computeIfAbsent(strategy, s -> new StrategyCounters());
+    }
+
+    // ========== PERSISTENCIA ==========
+
+    @PostConstruct
+    void load() {
+        if (snapshotFile.isBlank() || !Files.exists(Paths.get(snapshotFile))) {
+            return;
+        }
+        try {
+            PersistedCounters[] persisted = objectMapper.readValue(Paths.get(snapshotFile).toFile(), PersistedCounters[].class);
+            for (PersistedCounters p : persisted) {
+                countersFor(p.strategy()).restore(p);
+            }
+            logger.info("Estadísticas OCR cargadas de {}", snapshotFile);
+        } catch (IOException e) {
+            logger.warn("No se pudieron cargar las estadísticas OCR: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${ocr.stats.snapshot-interval-ms:60000}", initialDelayString = "${ocr.stats.snapshot-interval-ms:60000}")
+    public void save() {
+        if (snapshotFile.isBlank() || counters.isEmpty()) {
+            return;
+        }
+        try {
+            List<PersistedCounters> persisted = new ArrayList<>();
+            counters.forEach((name, c) -> persisted.add(c.persist(name)));
+
+            // Escritura atómica para no dejar un fichero a medias si el proceso muere
+            Path target = Paths.get(snapshotFile);
+            Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+            if (target.getParent() != null) {
+                Files.createDirectories(target.getParent());
+            }
+            objectMapper.writeValue(tmp.toFile(), persisted);
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("No se pudieron guardar las estadísticas OCR: {}", e.getMessage());
+        }
+    }
+
+    private static class StrategyCounters {
+        private final AtomicLong attempts = new AtomicLong();
+        private final AtomicLong successes = new AtomicLong();
+        private final AtomicLong wins = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+
+        // Últimas latencias para el p95
+        private final long[] samples = new long[LATENCY_SAMPLES];
+        private int sampleCount;
+        private int nextSample;
+
+        void record(long nanos, boolean success) {
+            attempts.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            if (success) {
+                successes.incrementAndGet();
+            }
+            synchronized (samples) {
+                samples[nextSample] = nanos;
+                nextSample = (nextSample + 1) % LATENCY_SAMPLES;
+                sampleCount = Math.min(sampleCount + 1, LATENCY_SAMPLES);
+            }
+        }
+
+        double successRate() {
+            // Suavizado de Laplace para que pocas muestras no den 0 o 1 exactos
+            return (successes.get() + 1.0) / (attempts.get() + 2.0);
+        }
+
+        double meanMillis() {
+            long n = attempts.get();
+            return n == 0 ? 0.0 : totalNanos.get() / 1_000_000.0 / n;
+        }
+
+        double p95Millis() {
+            long[] copy;
+            synchronized (samples) {
+                copy = Arrays.copyOf(samples, sampleCount);
+            }
+            if (copy.length == 0) {
+                return 0.0;
+            }
+            Arrays.sort(copy);
+            return copy[(int) Math.ceil(copy.length * 0.95) - 1] / 1_000_000.0;
+        }
+
+        // Éxitos esperados por milisegundo invertido
+        double score() {
+            return successRate() / Math.max(1.0, meanMillis());
+        }
+
+        StrategySnapshot snapshot(String name) {
+            return new StrategySnapshot(name, attempts.get(), successes.get(), wins.get(),
+                    successRate(), meanMillis(), p95Millis(), score());
+        }
+
+        PersistedCounters persist(String name) {
+            long[] copy;
+            synchronized (samples) {
+                copy = Arrays.copyOf(samples, sampleCount);
+            }
+            return new PersistedCounters(name, attempts.get(), successes.get(), wins.get(), totalNanos.get(), copy);
+        }
+
+        void restore(PersistedCounters p) {
+            attempts.set(p.attempts());
+            successes.set(p.successes());
+            wins.set(p.wins());
+            totalNanos.set(p.totalNanos());
+            synchronized (samples) {
+                long[] restored = p.samples() == null ? new long[0] : p.samples();
+                sampleCount = Math.min(restored.length, LATENCY_SAMPLES);
+                System.arraycopy(restored, restored.length - sampleCount, samples, 0, sampleCount);
+                nextSample = sampleCount % LATENCY_SAMPLES;
+            }
+        }
+    }
+
+    public record StrategySnapshot(
+            String strategy,
+            long attempts,
+            long successes,
+            long wins,
+            double successRate,
+            double meanMillis,
+            double p95Millis,
+            double score) {
+    }
+
+    public record PersistedCounters(String strategy, long attempts, long successes, long wins, long totalNanos, long[] samples) {
+    }
+}
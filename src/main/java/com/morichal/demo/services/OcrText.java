@@ -0,0 +1,10 @@
+package com.morichal.demo.services;
+
+/**
+ * Texto devuelto por un motor Tesseract y la confianza del motor en él.
+ *
+ * @param text       texto reconocido (UTF-8, sin recortar)
+ * @param confidence confianza (0-100) de la palabra con dígitos menos segura; 0 si no se leyó ninguna
+ */
+public record OcrText(String text, float confidence) {
+}
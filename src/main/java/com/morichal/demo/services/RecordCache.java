@@ -0,0 +1,178 @@
+package com.morichal.demo.services;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.morichal.demo.models.imageResponse;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Caché de lectura delante de imageResponseRepository: registros por id y, aparte y con
+ * más capacidad, el nombre y tipo de la imagen de cada id (lo único que necesita servirla).
+ * Límite de tamaño (LRU) y caducidad como {@link OcrResultCache}; solo se guardan registros
+ * encontrados. Quien modifica o borra un registro llama a {@link #invalidate(Long)}.
+ */
+@Component
+public class RecordCache {
+
+    @Value("${records.cache.max-entries:1000}")
+    private int maxRecords = 1000;
+
+    @Value("${records.cache.image-max-entries:10000}")
+    private int maxImageNames = 10000;
+
+    @Value("${records.cache.ttl-minutes:10}")
+    private long ttlMinutes = 10;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Cambia con cada invalidación: una carga que empezó antes no se guarda (podría ser antigua)
+    private final AtomicLong generation = new AtomicLong();
+
+    private Region<imageResponse> records;
+    private Region<ImageRef> imageNames;
+
+    @PostConstruct
+    void init() {
+        records = new Region<>("record", maxRecords);
+        imageNames = new Region<>("image", maxImageNames);
+    }
+
+    /** Registro con ese id, o null si no existe; {@code loader} solo se llama si no está en caché. */
+    public imageResponse record(Long id, Supplier<imageResponse> loader) {
+        return records.get(id, loader);
+    }
+
+    /** Imagen del registro, o null si el registro no existe o no tiene imagen. */
+    public ImageRef imageName(Long id, Supplier<ImageRef> loader) {
+        return imageNames.get(id, loader);
+    }
+
+    public void invalidate(Long id) {
+        generation.incrementAndGet();
+        records.remove(id);
+        imageNames.remove(id);
+    }
+
+    public List<CacheStats> getStats() {
+        return List.of(records.stats(), imageNames.stats());
+    }
+
+    private final class Region<V> {
+
+        private final String name;
+        private final int maxEntries;
+        private final Map<Long, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder evictions = new LongAdder();
+
+        Region(String name, int maxEntries) {
+            this.name = name;
+            this.maxEntries = maxEntries;
+            Gauge.builder("records.cache.hit.ratio", this, r -> r.stats().hitRatio())
+                    .description("Aciertos / consultas de la caché de registros")
+                    .tag("cache", name)
+                    .register(meterRegistry);
+            Gauge.builder("records.cache.size", this, r -> r.stats().size())
+                    .tag("cache", name)
+                    .register(meterRegistry);
+        }
+
+        V get(Long id, Supplier<V> loader) {
+            V cached = lookup(id);
+            if (cached != null) {
+                hits.increment();
+                meterRegistry.counter("records.cache.requests", "cache", name, "result", "hit").increment();
+                return cached;
+            }
+            misses.increment();
+            meterRegistry.counter("records.cache.requests", "cache", name, "result", "miss").increment();
+
+            long startGeneration = generation.get();
+            V loaded = loader.get();
+            if (loaded != null) {
+                synchronized (entries) {
+                    if (generation.get() == startGeneration) {
+                        put(id, loaded);
+                    }
+                }
+            }
+            return loaded;
+        }
+
+        void remove(Long id) {
+            synchronized (entries) {
+                entries.remove(id);
+            }
+        }
+
+        CacheStats stats() {
+            int size;
+            synchronized (entries) {
+                size = entries.size();
+            }
+            long h = hits.sum();
+            long m = misses.sum();
+            return new CacheStats(name, size, maxEntries, ttlMinutes, h, m, evictions.sum(),
+                    h + m == 0 ? 0.0 : (double) h / (h + m));
+        }
+
+        private V lookup(Long id) {
+            synchronized (entries) {
+                Entry<V> entry = entries.get(id);
+                if (entry == null) {
+                    return null;
+                }
+                if (entry.expiresAt() < System.currentTimeMillis()) {
+                    entries.remove(id);
+                    evictions.increment();
+                    return null;
+                }
+                return entry.value();
+            }
+        }
+
+        // Llamado con el monitor de entries
+        private void put(Long id, V value) {
+            entries.put(id, new Entry<>(value, System.currentTimeMillis() + ttlMinutes * 60_000));
+            Iterator<Entry<V>> iterator = entries.values().iterator();
+            while (entries.size() > maxEntries && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    public record ImageRef(String nombreImagen, String contentType) {
+    }
+
+    private record Entry<V>(V value, long expiresAt) {
+    }
+
+    public record CacheStats(
+            String cache,
+            int size,
+            int maxEntries,
+            long ttlMinutes,
+            long hits,
+            long misses,
+            long evictions,
+            double hitRatio) {
+    }
+}
@@ -0,0 +1,148 @@
+package com.morichal.demo.services;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.morichal.demo.models.ImageResponseSummary;
+import com.morichal.demo.repositories.imageResponseRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Exportación de registros en CSV o NDJSON. Las filas se leen de un cursor de la base de
+ * datos y se escriben según llegan: en memoria solo hay un bloque de filas del driver y
+ * el búfer de salida, sea cual sea el tamaño de la tabla.
+ */
+@Service
+public class RecordExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RecordExportService.class);
+
+    private static final String CSV_HEADER = "id,text,uM,categoria,estado,nombreImagen,fechaRegistro";
+
+    @Autowired
+    private imageResponseRepository imageResponseRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    public enum Format {
+        CSV("text/csv", "csv"),
+        NDJSON("application/x-ndjson", "ndjson");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String contentType() {
+            return contentType;
+        }
+
+        public String extension() {
+            return extension;
+        }
+
+        public static Format parse(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Formato no válido: " + value + " (csv o ndjson).");
+            }
+        }
+    }
+
+    /**
+     * Escribe en {@code out} los registros que cumplen los filtros, por id ascendente.
+     * La transacción (solo lectura) mantiene abierto el cursor mientras se escribe.
+     *
+     * @param desde primer día incluido (null = sin límite)
+     * @param hasta último día incluido (null = sin límite)
+     * @return filas escritas
+     */
+    @Transactional(readOnly = true)
+    public long export(Format format, String categoria, String estado, LocalDate desde, LocalDate hasta, OutputStream out)
+            throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        long rows = 0;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        try (Stream<ImageResponseSummary> stream = imageResponseRepository.streamForExport(blankToNull(categoria),
+                blankToNull(estado), desde == null ? null : desde.atStartOfDay(),
+                hasta == null ? null : hasta.plusDays(1).atStartOfDay())) {
+            if (format == Format.CSV) {
+                writer.write(CSV_HEADER);
+                writer.write('\n');
+            }
+            Iterator<ImageResponseSummary> iterator = stream.iterator();
+            while (iterator.hasNext()) {
+                ImageResponseSummary row = iterator.next();
+                if (format == Format.CSV) {
+                    writeCsv(writer, row);
+                } else {
+                    writer.write(objectMapper.writeValueAsString(row));
+                    writer.write('\n');
+                }
+                rows++;
+            }
+            writer.flush();
+        } finally {
+            sample.stop(meterRegistry.timer("records.operation", "op", "export"));
+            meterRegistry.counter("records.export.rows", "format", format.extension()).increment(rows);
+        }
+        logger.info("Exportados {} registros en {}", rows, format.extension());
+        return rows;
+    }
+
+    private static void writeCsv(Writer writer, ImageResponseSummary row) throws IOException {
+        writer.write(String.valueOf(row.id()));
+        writer.write(',');
+        writer.write(row.text() == null ? "" : row.text().toString());
+        writer.write(',');
+        writer.write(csv(row.uM()));
+        writer.write(',');
+        writer.write(csv(row.categoria()));
+        writer.write(',');
+        writer.write(csv(row.estado()));
+        writer.write(',');
+        writer.write(csv(row.nombreImagen()));
+        writer.write(',');
+        writer.write(row.fechaRegistro() == null ? "" : row.fechaRegistro().toString());
+        writer.write('\n');
+    }
+
+    // RFC 4180: entre comillas si lleva separador, comillas o saltos de línea
+    static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value;
+    }
+}
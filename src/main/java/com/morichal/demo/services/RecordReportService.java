@@ -0,0 +1,103 @@
+package com.morichal.demo.services;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.morichal.demo.models.RecordAggregate;
+import com.morichal.demo.models.RecordSeriesPoint;
+import com.morichal.demo.repositories.imageResponseRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Informes sobre los registros calculados en la base de datos (totales, cantidad, mínimo
+ * y máximo por grupo y por intervalo), en lugar de descargar la tabla y sumar en el navegador.
+ */
+@Service
+public class RecordReportService {
+
+    // Sin fechas en la serie: los últimos 30 días
+    private static final int DEFAULT_SERIES_DAYS = 30;
+
+    @Autowired
+    private imageResponseRepository imageResponseRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /** Tamaño del intervalo de la serie y su formato para date_format de MariaDB. */
+    public enum Bucket {
+        HOUR("%Y-%m-%d %H:00"),
+        DAY("%Y-%m-%d"),
+        WEEK("%x-W%v"),
+        MONTH("%Y-%m");
+
+        private final String format;
+
+        Bucket(String format) {
+            this.format = format;
+        }
+
+        public static Bucket parse(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Intervalo no válido: " + value + " (hour, day, week o month).");
+            }
+        }
+    }
+
+    /**
+     * Totales por categoría, estado y unidad.
+     *
+     * @param desde primer día incluido (null = sin límite)
+     * @param hasta último día incluido (null = sin límite)
+     */
+    public List<RecordAggregate> totalesPorGrupo(LocalDate desde, LocalDate hasta) {
+        if (desde == null && hasta == null) {
+            return timer("aggregate").record(() -> imageResponseRepository.aggregateByGroup());
+        }
+        // Con rango solo cuentan los registros con fecha de alta
+        LocalDateTime from = desde == null ? LocalDate.of(1970, 1, 1).atStartOfDay() : desde.atStartOfDay();
+        LocalDateTime to = hasta == null ? LocalDateTime.now().plusDays(1) : hasta.plusDays(1).atStartOfDay();
+        return timer("aggregate").record(() -> imageResponseRepository.aggregateByGroupBetween(from, to));
+    }
+
+    /** Totales por intervalo y unidad, con filtros opcionales de categoría y estado. */
+    public List<RecordSeriesPoint> serie(Bucket bucket, LocalDate desde, LocalDate hasta, String categoria, String estado) {
+        LocalDate until = hasta == null ? LocalDate.now() : hasta;
+        LocalDate from = desde == null ? until.minusDays(DEFAULT_SERIES_DAYS - 1) : desde;
+        if (from.isAfter(until)) {
+            throw new IllegalArgumentException("La fecha inicial es posterior a la final.");
+        }
+        List<Object[]> rows = timer("series").record(() -> imageResponseRepository.aggregateSeries(bucket.format,
+                from.atStartOfDay(), until.plusDays(1).atStartOfDay(), blankToNull(categoria), blankToNull(estado)));
+
+        List<RecordSeriesPoint> points = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            points.add(new RecordSeriesPoint((String) row[0], (String) row[1], ((Number) row[2]).longValue(),
+                    number(row[3]), number(row[4]), number(row[5])));
+        }
+        return points;
+    }
+
+    // sum/min/max son NULL si el grupo solo tiene registros sin valor
+    private static double number(Object value) {
+        return value == null ? 0 : ((Number) value).doubleValue();
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value;
+    }
+
+    // Mismo timer que las operaciones CRUD de OCRService (records.operation{op=...})
+    private Timer timer(String operation) {
+        return meterRegistry.timer("records.operation", "op", operation);
+    }
+}
@@ -0,0 +1,111 @@
+package com.morichal.demo.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+
+import javax.imageio.stream.ImageInputStreamImpl;
+
+/**
+ * ImageInputStream sobre el cuerpo de una subida. Cada byte que se lee de la red se
+ * escribe en el fichero de destino y se añade al hash en el momento; si el lector de
+ * imágenes retrocede, los bytes se releen del propio fichero. Así la subida se recorre
+ * una sola vez y nunca está entera en memoria.
+ */
+class UploadImageInputStream extends ImageInputStreamImpl {
+
+    private final InputStream source;
+    private final FileChannel file;
+    private final MessageDigest digest;
+    private final long maxBytes;
+
+    private final byte[] scratch = new byte[8192];
+    private final byte[] single = new byte[1];
+    private long received;
+    private boolean sourceExhausted;
+
+    UploadImageInputStream(InputStream source, FileChannel file, MessageDigest digest, long maxBytes) {
+        this.source = source;
+        this.file = file;
+        this.digest = digest;
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public int read() throws IOException {
+        return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        checkClosed();
+        if (len == 0) {
+            return 0;
+        }
+        bitOffset = 0;
+
+        // Salto hacia delante (seek/skip del lector): se trae de la red lo que falte
+        if (streamPos > received && !pull(streamPos)) {
+            return -1;
+        }
+        // Relectura tras un retroceso: del fichero, que ya tiene esos bytes
+        if (streamPos < received) {
+            int n = file.read(ByteBuffer.wrap(b, off, (int) Math.min(len, received - streamPos)), streamPos);
+            streamPos += n;
+            return n;
+        }
+        if (sourceExhausted) {
+            return -1;
+        }
+        int n = source.read(b, off, len);
+        if (n < 0) {
+            sourceExhausted = true;
+            return -1;
+        }
+        append(b, off, n);
+        streamPos += n;
+        return n;
+    }
+
+    // Lo que el lector no necesitó (metadatos finales, relleno) también se guarda y entra en el hash
+    void drain() throws IOException {
+        while (!sourceExhausted) {
+            int n = source.read(scratch);
+            if (n < 0) {
+                sourceExhausted = true;
+            } else {
+                append(scratch, 0, n);
+            }
+        }
+    }
+
+    long received() {
+        return received;
+    }
+
+    private boolean pull(long position) throws IOException {
+        while (received < position) {
+            int n = source.read(scratch, 0, (int) Math.min(scratch.length, position - received));
+            if (n < 0) {
+                sourceExhausted = true;
+                return false;
+            }
+            append(scratch, 0, n);
+        }
+        return true;
+    }
+
+    private void append(byte[] b, int off, int len) throws IOException {
+        if (received + len > maxBytes) {
+            throw new IllegalArgumentException("La imagen supera el tamaño máximo permitido (" + maxBytes + " bytes).");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+        while (buffer.hasRemaining()) {
+            file.write(buffer, received + buffer.position() - off);
+        }
+        digest.update(b, off, len);
+        received += len;
+    }
+}
@@ -0,0 +1,202 @@
+package com.morichal.demo.controllers;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.morichal.demo.services.FileStorageService;
+
+class ImageFileSenderTest {
+
+    private static final byte[] CONTENT = "0123456789".getBytes(StandardCharsets.US_ASCII);
+    // Segundos exactos: las cabeceras HTTP no llevan milisegundos
+    private static final long LAST_MODIFIED = 1_700_000_000_000L;
+
+    @TempDir
+    Path dir;
+
+    private final ImageFileSender sender = new ImageFileSender();
+    private FileStorageService.ImageFile file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Path path = dir.resolve("abc.jpg");
+        Files.write(path, CONTENT);
+        file = new FileStorageService.ImageFile("abc.jpg", path, CONTENT.length, LAST_MODIFIED);
+    }
+
+    private MockHttpServletResponse send(MockHttpServletRequest request) throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        sender.send(request, response, file, "image/jpeg", false);
+        return response;
+    }
+
+    private static String httpDate(long millis) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(millis).atZone(ZoneOffset.UTC));
+    }
+
+    @Test
+    void enviaLaImagenEnteraConSusValidadores() throws IOException {
+        MockHttpServletResponse response = send(new MockHttpServletRequest("GET", "/imagen"));
+
+        assertEquals(200, response.getStatus());
+        assertArrayEquals(CONTENT, response.getContentAsByteArray());
+        assertEquals("image/jpeg", response.getContentType());
+        assertEquals(CONTENT.length, response.getContentLengthLong());
+        assertEquals("\"abc.jpg\"", response.getHeader(HttpHeaders.ETAG));
+        assertEquals("bytes", response.getHeader(HttpHeaders.ACCEPT_RANGES));
+        assertEquals("no-cache", response.getHeader(HttpHeaders.CACHE_CONTROL));
+    }
+
+    @Test
+    void respondeNoModificadaSiCoincideElEtag() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/imagen");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"abc.jpg\"");
+
+        MockHttpServletResponse response = send(request);
+
+        assertEquals(304, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void respondeNoModificadaSiNoCambioDesdeLaFecha() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/imagen");
+        request.addHeader(HttpHeaders.IF_MODIFIED_SINCE, httpDate(LAST_MODIFIED));
+
+        assertEquals(304, send(request).getStatus());
+    }
+
+    @Test
+    void enviaUnRangoDeBytes() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/imagen");
+        request.addHeader(HttpHeaders.RANGE, "bytes=2-5");
+
+        MockHttpServletResponse response = send(request);
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 2-5/10", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals("2345", response.getContentAsString());
+        assertEquals(4, response.getContentLengthLong());
+    }
+
+    @Test
+    void enviaElFinalConUnRangoSufijo() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/imagen");
+        request.addHeader(HttpHeaders.RANGE, "bytes=-3");
+
+        MockHttpServletResponse response = send(request);
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 7-9/10", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals("789", response.getContentAsString());
+    }
+
+    @Test
+    void rechazaUnRangoFueraDelFichero() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/imagen");
+        request.addHeader(HttpHeaders.RANGE, "bytes=20-30");
+
+        MockHttpServletResponse response = send(request);
+
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */10", response.getHeader(HttpHeaders.CONTENT_RANGE));
+    }
+
+    @Test
+    void rechazaUnRangoSufijoVacioYUnoMalFormado() throws IOException {
+        MockHttpServletRequest vacio = new MockHttpServletRequest("GET", "/imagen");
+        vacio.addHeader(HttpHeaders.RANGE, "bytes=-0");
+        MockHttpServletRequest malFormado = new MockHttpServletRequest("GET", "/imagen");
+        malFormado.addHeader(HttpHeaders.RANGE, "bytes=5-2");
+
+        assertEquals(416, send(vacio).getStatus());
+        assertEquals(416, send(malFormado).getStatus());
+    }
+
+    @Test
+    void variosRangosEnvianLaImagenEntera() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/imagen");
+        request.addHeader(HttpHeaders.RANGE, "bytes=0-1,4-5");
+
+        MockHttpServletResponse response = send(request);
+
+        assertEquals(200, response.getStatus());
+        assertArrayEquals(CONTENT, response.getContentAsByteArray());
+    }
+
+    @Test
+    void ifRangeConElMismoEtagOFechaRespetaElRango() throws IOException {
+        MockHttpServletRequest porEtag = new MockHttpServletRequest("GET", "/imagen");
+        porEtag.addHeader(HttpHeaders.RANGE, "bytes=0-1");
+        porEtag.addHeader(HttpHeaders.IF_RANGE, "\"abc.jpg\"");
+        MockHttpServletRequest porFecha = new MockHttpServletRequest("GET", "/imagen");
+        porFecha.addHeader(HttpHeaders.RANGE, "bytes=0-1");
+        porFecha.addHeader(HttpHeaders.IF_RANGE, httpDate(LAST_MODIFIED));
+
+        assertEquals("01", send(porEtag).getContentAsString());
+        assertEquals("01", send(porFecha).getContentAsString());
+    }
+
+    @Test
+    void ifRangeDeOtraVersionEnviaLaImagenEntera() throws IOException {
+        MockHttpServletRequest otroEtag = new MockHttpServletRequest("GET", "/imagen");
+        otroEtag.addHeader(HttpHeaders.RANGE, "bytes=0-1");
+        otroEtag.addHeader(HttpHeaders.IF_RANGE, "\"otra.jpg\"");
+        MockHttpServletRequest otraFecha = new MockHttpServletRequest("GET", "/imagen");
+        otraFecha.addHeader(HttpHeaders.RANGE, "bytes=0-1");
+        otraFecha.addHeader(HttpHeaders.IF_RANGE, httpDate(LAST_MODIFIED - 60_000));
+
+        MockHttpServletResponse response = send(otroEtag);
+        assertEquals(200, response.getStatus());
+        assertNull(response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertArrayEquals(CONTENT, response.getContentAsByteArray());
+        assertArrayEquals(CONTENT, send(otraFecha).getContentAsByteArray());
+    }
+
+    @Test
+    void headSoloEnviaLasCabeceras() throws IOException {
+        MockHttpServletResponse response = send(new MockHttpServletRequest("HEAD", "/imagen"));
+
+        assertEquals(200, response.getStatus());
+        assertEquals(CONTENT.length, response.getContentLengthLong());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void conSendfileDejaLaCopiaATomcat() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/imagen");
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        request.addHeader(HttpHeaders.RANGE, "bytes=2-5");
+
+        MockHttpServletResponse response = send(request);
+
+        assertEquals(0, response.getContentAsByteArray().length);
+        assertEquals(file.path().toAbsolutePath().toString(), request.getAttribute("org.apache.tomcat.sendfile.filename"));
+        assertEquals(2L, request.getAttribute("org.apache.tomcat.sendfile.start"));
+        assertEquals(6L, request.getAttribute("org.apache.tomcat.sendfile.end"));
+    }
+
+    @Test
+    void lasUrlsInmutablesSeGuardanUnAnio() throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        sender.send(new MockHttpServletRequest("GET", "/imagen"), response, file, "image/jpeg", true);
+
+        assertEquals("max-age=31536000, public, immutable", response.getHeader(HttpHeaders.CACHE_CONTROL));
+    }
+}
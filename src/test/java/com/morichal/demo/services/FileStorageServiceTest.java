@@ -0,0 +1,253 @@
+package com.morichal.demo.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.morichal.demo.models.StoredImage;
+import com.morichal.demo.repositories.StoredImageRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class FileStorageServiceTest {
+
+    private static final byte[] JPEG = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0, 1, 2, 3, 4};
+    private static final byte[] PNG = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 5, 6};
+    private static final byte[] GIF = {'G', 'I', 'F', '8', '9', 'a', 7, 8};
+
+    @TempDir
+    Path dir;
+
+    private Path uploads;
+    private ExecutorService derivativeExecutor;
+    private FileStorageService storage;
+
+    // Tabla stored_image en memoria: nombre → referencias
+    private final Map<String, Integer> referencias = new HashMap<>();
+    private int releases;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        uploads = dir.resolve("uploads");
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        derivativeExecutor = Executors.newSingleThreadExecutor();
+
+        ImageDerivativeStore derivatives = new ImageDerivativeStore();
+        ReflectionTestUtils.setField(derivatives, "derivativesPath", dir.resolve("derivadas").toString());
+        ReflectionTestUtils.setField(derivatives, "imageDerivativeExecutor", derivativeExecutor);
+        ReflectionTestUtils.setField(derivatives, "meterRegistry", meterRegistry);
+        derivatives.init();
+
+        storage = new FileStorageService();
+        ReflectionTestUtils.setField(storage, "uploadPath", uploads.toString());
+        ReflectionTestUtils.setField(storage, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(storage, "imageDerivativeStore", derivatives);
+        ReflectionTestUtils.setField(storage, "storedImageRepository", repository());
+    }
+
+    @AfterEach
+    void tearDown() {
+        derivativeExecutor.shutdownNow();
+    }
+
+    private StoredImageRepository repository() {
+        Map<String, Function<Object[], Object>> methods = new HashMap<>();
+        methods.put("addReferences", args -> {
+            Integer actual = referencias.get((String) args[0]);
+            if (actual == null) {
+                return 0;
+            }
+            referencias.put((String) args[0], actual + (Integer) args[1]);
+            return 1;
+        });
+        methods.put("release", args -> {
+            releases++;
+            Integer actual = referencias.get((String) args[0]);
+            if (actual == null || actual == 0) {
+                return 0;
+            }
+            referencias.put((String) args[0], actual - 1);
+            return 1;
+        });
+        methods.put("deleteIfUnreferenced", args -> {
+            Integer actual = referencias.get((String) args[0]);
+            return actual != null && actual == 0 && referencias.remove((String) args[0]) != null ? 1 : 0;
+        });
+        methods.put("save", args -> {
+            StoredImage stored = (StoredImage) args[0];
+            referencias.put(stored.getNombre(), stored.getReferencias());
+            return stored;
+        });
+        methods.put("findById", args -> Optional.ofNullable(referencias.get((String) args[0]))
+                .map(n -> new StoredImage((String) args[0], n, 0)));
+        methods.put("deleteById", args -> {
+            referencias.remove((String) args[0]);
+            return null;
+        });
+        return Stubs.of(StoredImageRepository.class, methods);
+    }
+
+    private String guardar(String nombreOriginal, byte[] content) {
+        return storage.guardarImagen(new MockMultipartFile("imagen", nombreOriginal, "image/jpeg", content));
+    }
+
+    private List<Path> ficheros() throws IOException {
+        try (Stream<Path> files = storage.recorrerImagenes()) {
+            return files.toList();
+        }
+    }
+
+    @Test
+    void elMismoContenidoSeGuardaUnaVezYCuentaDosReferencias() throws IOException {
+        String primero = guardar("a.jpg", JPEG);
+        String segundo = guardar("otro-nombre.jpeg", JPEG);
+
+        assertEquals(primero, segundo);
+        assertTrue(FileStorageService.esNombreDeContenido(primero));
+        assertEquals(2, referencias.get(primero));
+        // Un solo fichero, en ab/cd/<hash>.jpg, y ningún .part abandonado
+        assertEquals(List.of(uploads.resolve(primero.substring(0, 2)).resolve(primero.substring(2, 4)).resolve(primero)),
+                ficheros());
+    }
+
+    @Test
+    void contenidoDistintoDaFicherosDistintos() throws IOException {
+        String jpeg = guardar("a.jpg", JPEG);
+        String png = guardar("b.jpg", PNG);
+
+        assertNotEquals(jpeg, png);
+        assertEquals(2, ficheros().size());
+        // La extensión sale de los bytes, no del nombre que puso el cliente
+        assertTrue(png.endsWith(".png"));
+        assertEquals("image/png", storage.tipoDeImagen(png));
+    }
+
+    @Test
+    void elFicheroSeBorraConLaUltimaReferencia() throws IOException {
+        String nombre = guardar("a.jpg", JPEG);
+        guardar("a.jpg", JPEG);
+
+        storage.eliminarImagen(nombre);
+        assertTrue(storage.existeImagen(nombre));
+        assertEquals(1, referencias.get(nombre));
+
+        storage.eliminarImagen(nombre);
+        assertFalse(storage.existeImagen(nombre));
+        assertFalse(referencias.containsKey(nombre));
+        assertTrue(ficheros().isEmpty());
+    }
+
+    @Test
+    void losNombresAntiguosSeBorranSinContador() throws IOException {
+        Files.createDirectories(uploads);
+        Files.write(uploads.resolve("57d44571-698a.jpeg"), JPEG);
+
+        storage.eliminarImagen("57d44571-698a.jpeg");
+
+        assertTrue(ficheros().isEmpty());
+    }
+
+    @Test
+    void rechazaNombresFueraDelDirectorio() throws IOException {
+        Files.write(dir.resolve("fuera.jpg"), JPEG);
+
+        for (String nombre : List.of("../fuera.jpg", "sub/../../fuera.jpg", dir.resolve("fuera.jpg").toString(), "", ".", "..")) {
+            assertThrows(IllegalArgumentException.class, () -> storage.eliminarImagen(nombre), nombre);
+            assertFalse(storage.existeImagen(nombre), nombre);
+        }
+        assertTrue(Files.exists(dir.resolve("fuera.jpg")));
+        // El nombre se rechaza antes de tocar el contador
+        assertEquals(0, releases);
+    }
+
+    @Test
+    void repararReferenciasSoloSube() throws IOException {
+        String nombre = guardar("a.jpg", JPEG);
+
+        assertTrue(storage.repararReferencias(nombre, 3));
+        assertEquals(3, referencias.get(nombre));
+        assertFalse(storage.repararReferencias(nombre, 1));
+        assertEquals(3, referencias.get(nombre));
+        assertFalse(storage.repararReferencias("57d44571-698a.jpeg", 2));
+    }
+
+    @Test
+    void unaHuerfanaRecienteNoSeBorra() throws IOException {
+        String nombre = guardar("a.jpg", JPEG);
+        Path archivo = ficheros().get(0);
+
+        assertEquals(0, storage.eliminarHuerfana(archivo, Instant.now().minusSeconds(3600), n -> 0));
+        Files.setLastModifiedTime(archivo, FileTime.from(Instant.now().minusSeconds(7200)));
+        // Con registros que la usan tampoco
+        assertEquals(0, storage.eliminarHuerfana(archivo, Instant.now().minusSeconds(3600), n -> 1));
+
+        assertEquals(JPEG.length, storage.eliminarHuerfana(archivo, Instant.now().minusSeconds(3600), n -> 0));
+        assertFalse(storage.existeImagen(nombre));
+        assertFalse(referencias.containsKey(nombre));
+    }
+
+    @Test
+    void sinFormatoConocidoNiNombreUsaJpg() throws IOException {
+        String nombre = guardar(null, "sin cabecera".getBytes(StandardCharsets.US_ASCII));
+
+        assertTrue(nombre.endsWith(".jpg"));
+        assertEquals("application/octet-stream", storage.tipoDeImagen(nombre));
+    }
+
+    @Test
+    void laExtensionDelClienteSiempreDaUnNombreDeContenido() throws IOException {
+        for (String original : List.of("foto.", "x.jpg~", "a.tar-gz")) {
+            String nombre = guardar(original, GIF);
+
+            assertTrue(FileStorageService.esNombreDeContenido(nombre), original);
+            assertFalse(Files.exists(uploads.resolve(nombre)), original);
+        }
+        assertTrue(guardar("x.jpg~", GIF).endsWith(".jpg"));
+    }
+
+    @Test
+    void laMigracionNoCuentaNiBorraUnNombreQueYaEsDeContenido() throws IOException {
+        String nombre = guardar("foto.", GIF);
+
+        assertEquals(nombre, storage.importarAntiguo(nombre, 1));
+        storage.borrarAntiguo(nombre);
+
+        assertTrue(storage.existeImagen(nombre));
+        assertEquals(1, referencias.get(nombre));
+    }
+
+    @Test
+    void unNombreDeContenidoSinContadorSeDejaALaReconciliacion() throws IOException {
+        String nombre = guardar("a.jpg", JPEG);
+        // Como si el save de stored_image hubiera fallado tras mover el fichero
+        referencias.remove(nombre);
+
+        storage.eliminarImagen(nombre);
+
+        assertTrue(storage.existeImagen(nombre));
+    }
+}
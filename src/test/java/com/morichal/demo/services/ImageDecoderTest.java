@@ -0,0 +1,56 @@
+package com.morichal.demo.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+
+class ImageDecoderTest {
+
+    private final ImageDecoder decoder = new ImageDecoder(0);
+
+    private static byte[] png(int width, int height) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY), "png", out);
+        return out.toByteArray();
+    }
+
+    @Test
+    void decodificaYSubmuestreaLasGrandes() throws IOException {
+        ImageDecoder.Decoded decoded = new ImageDecoder(100).decode(png(300, 120));
+
+        assertEquals(3, decoded.subsampling());
+        assertEquals(300, decoded.sourceWidth());
+        assertEquals(100, decoded.image().getWidth());
+    }
+
+    @Test
+    void unFormatoDesconocidoNoSeDecodifica() throws IOException {
+        assertNull(decoder.decode("no es una imagen".getBytes()));
+    }
+
+    @Test
+    void unaImagenTruncadaOCorruptaEsErrorDelCliente() throws IOException {
+        byte[] jpeg;
+        try (InputStream in = getClass().getResourceAsStream("/displays/dorado-87.jpg")) {
+            jpeg = in.readAllBytes();
+        }
+        byte[] png = png(50, 50);
+        byte[] pngCorrupto = png.clone();
+        Arrays.fill(pngCorrupto, 33, pngCorrupto.length - 12, (byte) 0x55);
+
+        for (byte[] content : new byte[][] {Arrays.copyOf(jpeg, 40), Arrays.copyOf(png, 40), pngCorrupto}) {
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> decoder.decode(content));
+            assertEquals("No se pudo decodificar la imagen.", e.getMessage());
+        }
+    }
+}
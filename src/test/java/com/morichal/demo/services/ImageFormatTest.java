@@ -0,0 +1,53 @@
+package com.morichal.demo.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.jupiter.api.Test;
+
+class ImageFormatTest {
+
+    // Cabecera con los bytes indicados y el resto a cero, como la deja readNBytes
+    private static ImageFormat detect(int... header) {
+        byte[] padded = new byte[ImageFormat.HEADER_LENGTH];
+        for (int i = 0; i < Math.min(header.length, padded.length); i++) {
+            padded[i] = (byte) header[i];
+        }
+        return ImageFormat.detect(padded, header.length);
+    }
+
+    @Test
+    void reconoceJpegYPng() {
+        assertEquals(ImageFormat.JPEG, detect(0xFF, 0xD8, 0xFF, 0xE0));
+        assertEquals(ImageFormat.PNG, detect(0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'));
+        assertEquals("image/png", ImageFormat.PNG.contentType());
+        assertEquals("jpg", ImageFormat.JPEG.extension());
+    }
+
+    @Test
+    void reconoceLasFotosDePrueba() throws IOException {
+        byte[] header = new byte[ImageFormat.HEADER_LENGTH];
+        try (InputStream in = getClass().getResourceAsStream("/displays/dorado-87.jpg")) {
+            int leidos = in.readNBytes(header, 0, header.length);
+            assertEquals(ImageFormat.JPEG, ImageFormat.detect(header, leidos));
+        }
+    }
+
+    @Test
+    void unaCabeceraCortaNoEsNingunFormato() {
+        // Los mismos bytes que un JPEG, pero leídos solo los dos primeros
+        assertNull(detect(0xFF, 0xD8));
+        assertNull(detect(0x89, 'P', 'N', 'G'));
+        assertNull(detect());
+    }
+
+    @Test
+    void otrosFormatosNoSeReconocen() {
+        assertNull(detect('G', 'I', 'F', '8', '9', 'a'));
+        assertNull(detect('<', 's', 'v', 'g', ' '));
+        assertNull(detect(0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, 'X'));
+    }
+}
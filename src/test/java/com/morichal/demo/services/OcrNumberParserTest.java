@@ -0,0 +1,58 @@
+package com.morichal.demo.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class OcrNumberParserTest {
+
+    @Test
+    void extraeDecimalesConPuntoOComa() {
+        assertEquals(12.5, OcrNumberParser.extractNumberWithDecimals("12.5 kg"));
+        assertEquals(1.25, OcrNumberParser.extractNumberWithDecimals("1,25"));
+        assertEquals(0.295, OcrNumberParser.extractNumberWithDecimals(" 0.295\n"));
+        assertEquals(87.0, OcrNumberParser.extractNumberWithDecimals("87"));
+    }
+
+    @Test
+    void conVariosPuntosConservaSoloElDecimal() {
+        assertEquals(1234.5, OcrNumberParser.extractNumberWithDecimals("1.234.5"));
+        assertEquals(1234.5, OcrNumberParser.extractNumberWithDecimals("1,234.5"));
+        // Más de tres cifras tras el último punto: no es la parte decimal
+        assertEquals(12345678.0, OcrNumberParser.extractNumberWithDecimals("1.234.5678"));
+        assertEquals(0.5, OcrNumberParser.extractNumberWithDecimals("..5"));
+    }
+
+    @Test
+    void sinDigitosNoHayNumero() {
+        assertNull(OcrNumberParser.extractNumberWithDecimals(null));
+        assertNull(OcrNumberParser.extractNumberWithDecimals("   "));
+        assertNull(OcrNumberParser.extractNumberWithDecimals("abc"));
+        assertNull(OcrNumberParser.extractNumberWithDecimals("."));
+        assertNull(OcrNumberParser.extractNumberWithDecimals(".."));
+        assertNull(OcrNumberParser.extractNumberWithDecimals(", ."));
+    }
+
+    @Test
+    void extraeNumerosLargosDeHastaOchoCifras() {
+        assertEquals(142976.0, OcrNumberParser.extractLongNumber("142976"));
+        assertEquals(142976.0, OcrNumberParser.extractLongNumber("1 42 976"));
+        assertEquals(2030.0, OcrNumberParser.extractLongNumber("20.30"));
+        assertEquals(12345678.0, OcrNumberParser.extractLongNumber("12345678"));
+        assertNull(OcrNumberParser.extractLongNumber("123456789"));
+        assertNull(OcrNumberParser.extractLongNumber("kg"));
+        assertNull(OcrNumberParser.extractLongNumber(null));
+    }
+
+    @Test
+    void validaElRangoDeUnaLectura() {
+        assertTrue(OcrNumberParser.isValidNumber(0.0));
+        assertTrue(OcrNumberParser.isValidNumber(1_000_000.0));
+        assertFalse(OcrNumberParser.isValidNumber(1_000_000.5));
+        assertFalse(OcrNumberParser.isValidNumber(-1.0));
+        assertFalse(OcrNumberParser.isValidNumber(null));
+    }
+}
@@ -0,0 +1,325 @@
+package com.morichal.demo.services;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.morichal.demo.models.OcrResult;
+
+/**
+ * Pasa todo el corpus etiquetado (src/test/resources/displays/labels.csv) por el OCR en
+ * paralelo y escribe un informe JSON con acierto, latencia (media, p50, p95, p99) y
+ * profundidad de cascada, en total y por estrategia ganadora. Si se indica un informe de
+ * referencia, termina con código 1 cuando el acierto baja, una imagen deja de reconocerse,
+ * la latencia sube más de lo permitido o la referencia no existe, para que falle el build.
+ * Con {@code --write-baseline true} el informe pasa a ser la referencia.
+ *
+ * Uso: mvn -Pocr-regression verify
+ *      (o java ... OcrRegressionRunner --corpus DIR --output FICHERO [--baseline FICHERO] [opciones])
+ *
+ * El reconocimiento es el de extractNumberFromImage sin la caché de resultados, que haría
+ * que las repeticiones no midieran nada.
+ */
+public class OcrRegressionRunner {
+
+    private static final String SIN_RESULTADO = "ninguna";
+    private static final String ERROR = "error";
+
+    public static void main(String[] args) throws Exception {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Uso: OcrRegressionRunner --corpus DIR --output FICHERO [--baseline FICHERO]"
+                    + " [--threads N] [--repeat N] [--mode sequential|parallel] [--min-accuracy 0..1]"
+                    + " [--max-accuracy-drop 0..1] [--max-latency-increase 0.25]"
+                    + " [--accept-confidence 80] [--min-confidence 10] [--write-baseline true|false]");
+            System.exit(2);
+            return;
+        }
+
+        List<Entry> corpus = loadCorpus(options.corpus);
+        Report report = run(corpus, options);
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        File output = new File(options.output);
+        if (output.getParentFile() != null) {
+            output.getParentFile().mkdirs();
+        }
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(output, report);
+        print(report);
+        System.out.println("Informe: " + output.getPath());
+
+        List<String> regressions = new ArrayList<>();
+        if (report.overall().accuracy() < options.minAccuracy) {
+            regressions.add(String.format("acierto %.3f por debajo del mínimo %.3f",
+                    report.overall().accuracy(), options.minAccuracy));
+        }
+        if (options.baseline != null) {
+            File baselineFile = new File(options.baseline);
+            if (options.writeBaseline) {
+                if (regressions.isEmpty()) {
+                    objectMapper.writerWithDefaultPrettyPrinter().writeValue(baselineFile, report);
+                    System.out.println("Nueva referencia: " + baselineFile.getPath());
+                }
+            } else if (baselineFile.isFile()) {
+                regressions.addAll(compare(objectMapper.readValue(baselineFile, Report.class), report, options));
+            } else {
+                // Sin referencia no hay con qué comparar: es un fallo, no un aprobado
+                regressions.add("no existe la referencia " + baselineFile.getPath()
+                        + " (genérela con --write-baseline true)");
+            }
+        }
+
+        if (!regressions.isEmpty()) {
+            System.err.println("REGRESIÓN OCR:");
+            regressions.forEach(r -> System.err.println("  - " + r));
+            System.exit(1);
+        }
+    }
+
+    static List<Entry> loadCorpus(String directory) throws IOException {
+        Path dir = Path.of(directory);
+        List<Entry> corpus = new ArrayList<>();
+        for (String line : Files.readAllLines(dir.resolve("labels.csv"), StandardCharsets.UTF_8)) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] parts = line.split(",");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Línea de etiquetas no válida: " + line);
+            }
+            String name = parts[0].trim();
+            corpus.add(new Entry(name, Double.parseDouble(parts[1].trim()), Files.readAllBytes(dir.resolve(name))));
+        }
+        if (corpus.isEmpty()) {
+            throw new IllegalArgumentException("El corpus no tiene imágenes etiquetadas: " + dir);
+        }
+        return corpus;
+    }
+
+    static Report run(List<Entry> corpus, Options options) throws InterruptedException {
+        String datapath = System.getProperty("tesseract.datapath", "/usr/share/tesseract-ocr/5/tessdata");
+        OcrEnginePool pool = new OcrEnginePool(datapath, "eng", options.threads, 60000);
+        pool.setConcurrencyLimiter(new OcrConcurrencyLimiter(options.threads, 60000));
+        ExecutorService cascadeExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        ExecutorService workers = Executors.newFixedThreadPool(options.threads);
+        try {
+            // Orden fijo: el adaptativo haría depender el resultado de las imágenes anteriores
+            OcrCascade cascade = new OcrCascade(pool, cascadeExecutor, new OcrStrategyStats(),
+                    OcrCascade.Mode.valueOf(options.mode.toUpperCase()), 1, 2);
+            cascade.setConfidence(options.acceptConfidence, options.minConfidence);
+            pool.warmUp(cascade.engineConfigs());
+            OcrPipeline pipeline = new OcrPipeline(new ImageDecoder(2000), new DisplayRegionDetector(), cascade,
+                    OcrMetrics.noop());
+
+            // Una pasada sin medir para cargar motores y compilar el código caliente
+            runPass(corpus, 1, pipeline, workers);
+            List<Sample> samples = runPass(corpus, options.repeat, pipeline, workers);
+            return report(corpus.size(), samples, options);
+        } finally {
+            workers.shutdownNow();
+            cascadeExecutor.shutdownNow();
+            pool.close();
+        }
+    }
+
+    private static List<Sample> runPass(List<Entry> corpus, int repeat, OcrPipeline pipeline, ExecutorService workers)
+            throws InterruptedException {
+        List<Callable<Sample>> tasks = new ArrayList<>();
+        for (int i = 0; i < repeat; i++) {
+            for (Entry entry : corpus) {
+                tasks.add(() -> recognize(entry, pipeline));
+            }
+        }
+        List<Sample> samples = new ArrayList<>(tasks.size());
+        for (Future<Sample> future : workers.invokeAll(tasks)) {
+            try {
+                samples.add(future.get());
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Fallo inesperado en el corpus", e.getCause());
+            }
+        }
+        return samples;
+    }
+
+    private static Sample recognize(Entry entry, OcrPipeline pipeline) {
+        long start = System.nanoTime();
+        try {
+            OcrResult result = pipeline.recognize(entry.content());
+            long nanos = System.nanoTime() - start;
+            if (result == null) {
+                return new Sample(entry, null, SIN_RESULTADO, 0, nanos, null);
+            }
+            return new Sample(entry, result.value(), result.strategy(), result.depth(), nanos, null);
+        } catch (IOException | RuntimeException e) {
+            return new Sample(entry, null, ERROR, 0, System.nanoTime() - start, e.getMessage());
+        }
+    }
+
+    static Report report(int images, List<Sample> samples, Options options) {
+        Map<String, List<Sample>> byStrategy = new TreeMap<>();
+        for (Sample sample : samples) {
+            byStrategy.computeIfAbsent(sample.strategy(), s -> new ArrayList<>()).add(sample);
+        }
+        Map<String, Stats> strategies = new LinkedHashMap<>();
+        byStrategy.forEach((strategy, group) -> strategies.put(strategy, stats(group)));
+
+        // Un fallo por imagen basta para localizarlo
+        Map<String, Failure> failures = new LinkedHashMap<>();
+        for (Sample sample : samples) {
+            if (!sample.correct()) {
+                failures.putIfAbsent(sample.entry().name(), new Failure(sample.entry().name(),
+                        sample.entry().expected(), sample.value(), sample.strategy(), sample.error()));
+            }
+        }
+        return new Report(options.mode.toLowerCase(), options.threads, options.repeat, images,
+                stats(samples), strategies, new ArrayList<>(failures.values()));
+    }
+
+    static Stats stats(List<Sample> samples) {
+        long[] nanos = samples.stream().mapToLong(Sample::nanos).sorted().toArray();
+        int correct = (int) samples.stream().filter(Sample::correct).count();
+        return new Stats(
+                samples.size(),
+                correct,
+                samples.isEmpty() ? 0.0 : (double) correct / samples.size(),
+                Arrays.stream(nanos).average().orElse(0) / 1_000_000.0,
+                percentile(nanos, 0.50),
+                percentile(nanos, 0.95),
+                percentile(nanos, 0.99),
+                samples.stream().mapToInt(Sample::depth).average().orElse(0));
+    }
+
+    // Rango más cercano sobre los tiempos ya ordenados, en milisegundos
+    static double percentile(long[] sortedNanos, double quantile) {
+        if (sortedNanos.length == 0) {
+            return 0.0;
+        }
+        int rank = (int) Math.ceil(quantile * sortedNanos.length);
+        return sortedNanos[Math.max(0, rank - 1)] / 1_000_000.0;
+    }
+
+    // p99 no se compara: con un corpus pequeño es prácticamente el máximo y varía mucho
+    static List<String> compare(Report baseline, Report current, Options options) {
+        List<String> regressions = new ArrayList<>();
+        double accuracyDrop = baseline.overall().accuracy() - current.overall().accuracy();
+        if (accuracyDrop > options.maxAccuracyDrop + 1e-9) {
+            regressions.add(String.format("acierto %.3f -> %.3f", baseline.overall().accuracy(), current.overall().accuracy()));
+        }
+        List<String> previouslyFailing = baseline.failures().stream().map(Failure::image).toList();
+        for (Failure failure : current.failures()) {
+            if (!previouslyFailing.contains(failure.image())) {
+                regressions.add("ya no se reconoce " + failure.image() + " (esperado " + failure.expected()
+                        + ", obtenido " + failure.actual() + ")");
+            }
+        }
+        checkLatency("p50", baseline.overall().p50Millis(), current.overall().p50Millis(), options, regressions);
+        checkLatency("p95", baseline.overall().p95Millis(), current.overall().p95Millis(), options, regressions);
+        return regressions;
+    }
+
+    private static void checkLatency(String name, double before, double after, Options options, List<String> regressions) {
+        if (before > 0 && after > before * (1 + options.maxLatencyIncrease)) {
+            regressions.add(String.format("latencia %s %.1f ms -> %.1f ms (+%.0f%%, máximo +%.0f%%)",
+                    name, before, after, (after / before - 1) * 100, options.maxLatencyIncrease * 100));
+        }
+    }
+
+    private static void print(Report report) {
+        System.out.printf("Corpus: %d imágenes x %d repeticiones, %d hilos, modo %s%n",
+                report.images(), report.repeat(), report.threads(), report.mode());
+        System.out.printf("%-14s %7s %8s %9s %9s %9s %9s %6s%n",
+                "estrategia", "n", "acierto", "media ms", "p50 ms", "p95 ms", "p99 ms", "prof.");
+        report.strategies().forEach((strategy, stats) -> printRow(strategy, stats));
+        printRow("TOTAL", report.overall());
+        for (Failure failure : report.failures()) {
+            System.out.printf("  ✗ %s: esperado %s, obtenido %s (%s)%n", failure.image(), failure.expected(),
+                    failure.actual(), failure.error() != null ? failure.error() : failure.strategy());
+        }
+    }
+
+    private static void printRow(String name, Stats stats) {
+        System.out.printf("%-14s %7d %8.3f %9.1f %9.1f %9.1f %9.1f %6.2f%n", name, stats.samples(), stats.accuracy(),
+                stats.meanMillis(), stats.p50Millis(), stats.p95Millis(), stats.p99Millis(), stats.meanDepth());
+    }
+
+    record Entry(String name, double expected, byte[] content) {
+    }
+
+    record Sample(Entry entry, Double value, String strategy, int depth, long nanos, String error) {
+        boolean correct() {
+            return value != null && Math.abs(value - entry.expected()) < 1e-9;
+        }
+    }
+
+    /** Informe que se escribe en JSON y se relee como referencia en la siguiente ejecución. */
+    public record Report(String mode, int threads, int repeat, int images, Stats overall,
+            Map<String, Stats> strategies, List<Failure> failures) {
+    }
+
+    public record Stats(int samples, int correct, double accuracy, double meanMillis,
+            double p50Millis, double p95Millis, double p99Millis, double meanDepth) {
+    }
+
+    public record Failure(String image, double expected, Double actual, String strategy, String error) {
+    }
+
+    static class Options {
+        String corpus = "src/test/resources/displays";
+        String output = "target/ocr-regression.json";
+        String baseline;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int repeat = 3;
+        String mode = "sequential";
+        double minAccuracy = 0.0;
+        double maxAccuracyDrop = 0.0;
+        double maxLatencyIncrease = 0.25;
+        float acceptConfidence = 80;
+        float minConfidence = 10;
+        boolean writeBaseline;
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (int i = 0; i < args.length; i++) {
+                String name = args[i];
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Falta el valor de " + name);
+                }
+                String value = args[++i];
+                switch (name) {
+                    case "--corpus" -> options.corpus = value;
+                    case "--output" -> options.output = value;
+                    case "--baseline" -> options.baseline = value;
+                    case "--threads" -> options.threads = Math.max(1, Integer.parseInt(value));
+                    case "--repeat" -> options.repeat = Math.max(1, Integer.parseInt(value));
+                    case "--mode" -> options.mode = OcrCascade.Mode.valueOf(value.toUpperCase()).name().toLowerCase();
+                    case "--min-accuracy" -> options.minAccuracy = Double.parseDouble(value);
+                    case "--max-accuracy-drop" -> options.maxAccuracyDrop = Double.parseDouble(value);
+                    case "--max-latency-increase" -> options.maxLatencyIncrease = Double.parseDouble(value);
+                    case "--accept-confidence" -> options.acceptConfidence = Float.parseFloat(value);
+                    case "--min-confidence" -> options.minConfidence = Float.parseFloat(value);
+                    case "--write-baseline" -> options.writeBaseline = Boolean.parseBoolean(value);
+                    default -> throw new IllegalArgumentException("Opción desconocida: " + name);
+                }
+            }
+            return options;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.morichal.demo.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.morichal.demo.models.OcrResult;
+
+class OcrResultCacheTest {
+
+    private static OcrResult result(double value) {
+        return new OcrResult(value, "basic", 1, 90f);
+    }
+
+    @Test
+    void guardaElResultadoYLoDevuelveSinVolverACalcular() throws IOException {
+        OcrResultCache cache = new OcrResultCache();
+        AtomicInteger loads = new AtomicInteger();
+
+        OcrResult first = cache.getOrCompute("a", () -> {
+            loads.incrementAndGet();
+            return result(1.0);
+        });
+        OcrResult second = cache.getOrCompute("a", () -> {
+            loads.incrementAndGet();
+            return result(2.0);
+        });
+
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getStats().hits());
+        assertEquals(1, cache.getStats().misses());
+    }
+
+    @Test
+    void caducaPasadoElTtl() throws Exception {
+        OcrResultCache cache = new OcrResultCache();
+        ReflectionTestUtils.setField(cache, "ttlMinutes", 0L);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.getOrCompute("a", () -> result(loads.incrementAndGet()));
+        Thread.sleep(5);
+        OcrResult again = cache.getOrCompute("a", () -> result(loads.incrementAndGet()));
+
+        assertEquals(2.0, again.value());
+        assertEquals(1, cache.getStats().evictions());
+    }
+
+    @Test
+    void descartaLaMenosUsadaRecientemente() throws IOException {
+        OcrResultCache cache = new OcrResultCache();
+        ReflectionTestUtils.setField(cache, "maxEntries", 2);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.getOrCompute("a", () -> result(loads.incrementAndGet()));
+        cache.getOrCompute("b", () -> result(loads.incrementAndGet()));
+        // "a" se usa ahora, así que la menos reciente pasa a ser "b"
+        cache.getOrCompute("a", () -> result(loads.incrementAndGet()));
+        cache.getOrCompute("c", () -> result(loads.incrementAndGet()));
+
+        assertEquals(3, loads.get());
+        cache.getOrCompute("a", () -> result(loads.incrementAndGet()));
+        assertEquals(3, loads.get());
+        cache.getOrCompute("b", () -> result(loads.incrementAndGet()));
+        assertEquals(4, loads.get());
+        assertEquals(2, cache.getStats().size());
+    }
+
+    @Test
+    void noGuardaErroresNiNulos() throws IOException {
+        OcrResultCache cache = new OcrResultCache();
+
+        assertThrows(IOException.class, () -> cache.getOrCompute("a", () -> {
+            throw new IOException("fallo");
+        }));
+        cache.getOrCompute("b", () -> null);
+
+        assertEquals(0, cache.getStats().size());
+        assertEquals(4.0, cache.getOrCompute("a", () -> result(4.0)).value());
+    }
+
+    @Test
+    void lasPeticionesSimultaneasCompartenUnSoloCalculo() throws Exception {
+        OcrResultCache cache = new OcrResultCache();
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<OcrResult> first = executor.submit(() -> cache.getOrCompute("a", () -> {
+                loads.incrementAndGet();
+                started.countDown();
+                await(release);
+                return result(7.0);
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            Future<OcrResult> second = executor.submit(() -> cache.getOrCompute("a", () -> result(loads.incrementAndGet())));
+
+            // La segunda espera al cálculo en curso en lugar de lanzar otro
+            while (cache.getStats().sharedComputations() == 0) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+
+            assertSame(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS));
+            assertEquals(1, loads.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void unErrorCompartidoLlegaATodosLosQueEsperan() throws Exception {
+        OcrResultCache cache = new OcrResultCache();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<OcrResult> first = executor.submit(() -> cache.getOrCompute("a", () -> {
+                started.countDown();
+                await(release);
+                throw new IOException("fallo");
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            Future<OcrResult> second = executor.submit(() -> cache.getOrCompute("a", () -> result(1.0)));
+            while (cache.getStats().sharedComputations() == 0) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+
+            Exception e1 = assertThrows(Exception.class, () -> first.get(5, TimeUnit.SECONDS));
+            Exception e2 = assertThrows(Exception.class, () -> second.get(5, TimeUnit.SECONDS));
+            assertTrue(e1.getCause() instanceof IOException);
+            assertTrue(e2.getCause() instanceof IOException);
+            assertEquals(0, cache.getStats().size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
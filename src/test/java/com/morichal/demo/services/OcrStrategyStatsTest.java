@@ -0,0 +1,46 @@
+package com.morichal.demo.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class OcrStrategyStatsTest {
+
+    private static final List<String> DEFAULT_ORDER = List.of("basic", "safe", "decimal");
+
+    private static void record(OcrStrategyStats stats, String strategy, int attempts, long millis, boolean success) {
+        for (int i = 0; i < attempts; i++) {
+            stats.recordAttempt(strategy, millis * 1_000_000L, success);
+        }
+    }
+
+    @Test
+    void sinMuestrasSuficientesRespetaElOrdenPorDefecto() {
+        OcrStrategyStats stats = new OcrStrategyStats();
+        record(stats, "decimal", 19, 5, true);
+
+        assertEquals(DEFAULT_ORDER, stats.order(DEFAULT_ORDER));
+    }
+
+    @Test
+    void reordenaAunqueUnaEstrategiaNoTengaMuestras() {
+        OcrStrategyStats stats = new OcrStrategyStats();
+        record(stats, "basic", 20, 100, false);
+        record(stats, "safe", 20, 10, true);
+
+        // decimal no tiene intentos: toma la media de las otras dos y queda entre ellas
+        assertEquals(List.of("safe", "decimal", "basic"), stats.order(DEFAULT_ORDER));
+    }
+
+    @Test
+    void pocasMuestrasPesanEnProporcion() {
+        OcrStrategyStats stats = new OcrStrategyStats();
+        record(stats, "basic", 20, 100, false);
+        record(stats, "safe", 20, 10, true);
+        record(stats, "decimal", 15, 5, true);
+
+        assertEquals(List.of("decimal", "safe", "basic"), stats.order(DEFAULT_ORDER));
+    }
+}
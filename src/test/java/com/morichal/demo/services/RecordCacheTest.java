@@ -0,0 +1,97 @@
+package com.morichal.demo.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.morichal.demo.models.imageResponse;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class RecordCacheTest {
+
+    private RecordCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new RecordCache();
+        ReflectionTestUtils.setField(cache, "meterRegistry", new SimpleMeterRegistry());
+        cache.init();
+    }
+
+    @Test
+    void devuelveElRegistroGuardadoSinVolverACargar() {
+        imageResponse registro = new imageResponse(1.0);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.record(1L, () -> {
+            loads.incrementAndGet();
+            return registro;
+        });
+        imageResponse again = cache.record(1L, () -> {
+            loads.incrementAndGet();
+            return new imageResponse(2.0);
+        });
+
+        assertSame(registro, again);
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void noGuardaRegistrosInexistentes() {
+        AtomicInteger loads = new AtomicInteger();
+
+        assertNull(cache.record(1L, () -> {
+            loads.incrementAndGet();
+            return null;
+        }));
+        cache.record(1L, () -> {
+            loads.incrementAndGet();
+            return null;
+        });
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void invalidarQuitaElRegistroYSuImagen() {
+        cache.record(1L, () -> new imageResponse(1.0));
+        cache.imageName(1L, () -> new RecordCache.ImageRef("a.jpg", "image/jpeg"));
+
+        cache.invalidate(1L);
+
+        assertEquals(2.0, cache.record(1L, () -> new imageResponse(2.0)).getText());
+        assertEquals("b.jpg", cache.imageName(1L, () -> new RecordCache.ImageRef("b.jpg", "image/jpeg")).nombreImagen());
+    }
+
+    @Test
+    void unaCargaQueEmpezoAntesDeInvalidarNoSeGuarda() {
+        imageResponse antiguo = new imageResponse(1.0);
+
+        // Mientras se lee el registro, otra petición lo modifica e invalida
+        imageResponse loaded = cache.record(1L, () -> {
+            cache.invalidate(1L);
+            return antiguo;
+        });
+
+        assertSame(antiguo, loaded);
+        imageResponse actual = new imageResponse(2.0);
+        assertSame(actual, cache.record(1L, () -> actual));
+    }
+
+    @Test
+    void caducaPasadoElTtl() throws InterruptedException {
+        ReflectionTestUtils.setField(cache, "ttlMinutes", 0L);
+        cache.record(1L, () -> new imageResponse(1.0));
+        Thread.sleep(5);
+
+        assertEquals(2.0, cache.record(1L, () -> new imageResponse(2.0)).getText());
+        assertEquals(1, cache.getStats().get(0).evictions());
+    }
+}
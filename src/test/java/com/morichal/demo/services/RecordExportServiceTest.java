@@ -0,0 +1,87 @@
+package com.morichal.demo.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.morichal.demo.models.ImageResponseSummary;
+import com.morichal.demo.repositories.imageResponseRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class RecordExportServiceTest {
+
+    @Test
+    void csvDejaTalCualLosValoresSimples() {
+        assertEquals("kg", RecordExportService.csv("kg"));
+        assertEquals("", RecordExportService.csv(""));
+        assertEquals("", RecordExportService.csv(null));
+    }
+
+    @Test
+    void csvEntrecomillaSeparadoresComillasYSaltos() {
+        assertEquals("\"a,b\"", RecordExportService.csv("a,b"));
+        assertEquals("\"dijo \"\"hola\"\"\"", RecordExportService.csv("dijo \"hola\""));
+        assertEquals("\"una\nlínea\"", RecordExportService.csv("una\nlínea"));
+        assertEquals("\"fin\r\"", RecordExportService.csv("fin\r"));
+    }
+
+    @Test
+    void exportaCabeceraYFilasEnCsv() throws IOException {
+        LocalDateTime fecha = LocalDateTime.of(2024, 5, 1, 10, 30);
+        imageResponseRepository repository = Stubs.of(imageResponseRepository.class, Map.of("streamForExport", args -> {
+            // Filtros en blanco como null y el día "desde" desde su primera hora
+            assertEquals("peso", args[0]);
+            assertNull(args[1]);
+            assertEquals(LocalDateTime.of(2024, 5, 1, 0, 0), args[2]);
+            assertNull(args[3]);
+            return Stream.of(
+                    new ImageResponseSummary(1L, 12.5, "kg", "peso", "ok", "a.jpg", fecha),
+                    new ImageResponseSummary(2L, null, "kg", "peso", "revisar, \"dudoso\"", null, null));
+        }));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long rows = service(repository).export(RecordExportService.Format.CSV, "peso", " ", LocalDate.of(2024, 5, 1),
+                null, out);
+
+        assertEquals(2, rows);
+        assertEquals("id,text,uM,categoria,estado,nombreImagen,fechaRegistro\n"
+                + "1,12.5,kg,peso,ok,a.jpg,2024-05-01T10:30\n"
+                + "2,,kg,peso,\"revisar, \"\"dudoso\"\"\",,\n", out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void exportaUnaLineaJsonPorRegistro() throws IOException {
+        imageResponseRepository repository = Stubs.of(imageResponseRepository.class, Map.of("streamForExport",
+                args -> Stream.of(
+                        new ImageResponseSummary(1L, 3.0, "kg", "peso", "ok", null, null),
+                        new ImageResponseSummary(2L, 4.0, "kg", "peso", "ok", null, null))));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service(repository).export(RecordExportService.Format.NDJSON, null, null, null, null, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        assertEquals(1, new ObjectMapper().readTree(lines[0]).get("id").asLong());
+        assertEquals(4.0, new ObjectMapper().readTree(lines[1]).get("text").asDouble());
+    }
+
+    private static RecordExportService service(imageResponseRepository repository) {
+        RecordExportService service = new RecordExportService();
+        ReflectionTestUtils.setField(service, "imageResponseRepository", repository);
+        ReflectionTestUtils.setField(service, "objectMapper", new ObjectMapper().findAndRegisterModules());
+        ReflectionTestUtils.setField(service, "meterRegistry", new SimpleMeterRegistry());
+        return service;
+    }
+}